@@ -0,0 +1,70 @@
+package bgu.spl.mics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing a broadcast and having every subscriber take it, against the
+ * number of subscribers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastFanOutBenchmark {
+
+    static final class Tick implements Broadcast {
+    }
+
+    @Param({"1", "8", "64", "256"})
+    public int subscribers;
+
+    @Param({"blocking", "mpsc"})
+    public String mailbox;
+
+    private MessageBusImpl bus;
+    private MicroService[] services;
+    private final Tick tick = new Tick();
+
+    @Setup
+    public void setUp() {
+        System.setProperty("bgu.spl.mics.mailbox", mailbox);
+        bus = MessageBusImpl.getInstance();
+        services = new MicroService[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            services[i] = new IdleService("subscriber" + i);
+            bus.register(services[i]);
+            bus.subscribeBroadcast(Tick.class, services[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (MicroService s : services) {
+            bus.unregister(s);
+        }
+    }
+
+    @Benchmark
+    public void publishAndTakeAll(Blackhole bh) throws InterruptedException {
+        bus.sendBroadcast(tick);
+        for (MicroService s : services) {
+            bh.consume(bus.awaitMessage(s));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package bgu.spl.mics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Taking messages of a few different types out of a mailbox and dispatching
+ * each to its callback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    private static final int BATCH = 64;
+
+    static final class A implements Event<Void> { }
+    static final class B implements Event<Void> { }
+    static final class C implements Event<Void> { }
+    static final class D implements Event<Void> { }
+
+    static final class Handler extends MicroService {
+        long handled;
+
+        Handler() {
+            super("handler");
+        }
+
+        @Override
+        protected void initialize() {
+            subscribeEvent(A.class, e -> handled++);
+            subscribeEvent(B.class, e -> handled++);
+            subscribeEvent(C.class, e -> handled++);
+            subscribeEvent(D.class, e -> handled++);
+        }
+    }
+
+    private final Message[] messages = { new A(), new B(), new C(), new D() };
+    private MessageBusImpl bus;
+    private Handler handler;
+
+    @Setup
+    public void setUp() {
+        bus = MessageBusImpl.getInstance();
+        handler = new Handler();
+        handler.openActor(() -> { });
+    }
+
+    @TearDown
+    public void tearDown() {
+        bus.unregister(handler);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long takeAndDispatch() {
+        for (int i = 0; i < BATCH; i++) {
+            bus.post(handler, messages[i & 3]);
+        }
+        handler.runActor(BATCH);
+        return handler.handled;
+    }
+}
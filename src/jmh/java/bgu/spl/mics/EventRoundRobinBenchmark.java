@@ -0,0 +1,71 @@
+package bgu.spl.mics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sending an event to a round-robin group of handlers, taking it out of the
+ * chosen handler's mailbox and completing it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventRoundRobinBenchmark {
+
+    static final class Ping implements Event<Boolean> {
+    }
+
+    @Param({"1", "4", "16"})
+    public int handlers;
+
+    @Param({"blocking", "mpsc"})
+    public String mailbox;
+
+    private MessageBusImpl bus;
+    private MicroService[] services;
+    private final Ping ping = new Ping();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("bgu.spl.mics.mailbox", mailbox); // every trial runs in a fresh fork
+        bus = MessageBusImpl.getInstance();
+        services = new MicroService[handlers];
+        for (int i = 0; i < handlers; i++) {
+            services[i] = new IdleService("handler" + i);
+            bus.register(services[i]);
+            bus.subscribeEvent(Ping.class, services[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (MicroService s : services) {
+            bus.unregister(s);
+        }
+    }
+
+    @Benchmark
+    public Message sendTakeComplete() throws InterruptedException {
+        bus.sendEvent(ping);
+        Message m = bus.awaitMessage(services[next]); // handlers are picked in subscription order
+        next = next + 1 == handlers ? 0 : next + 1;
+        bus.complete(ping, Boolean.TRUE);
+        return m;
+    }
+}
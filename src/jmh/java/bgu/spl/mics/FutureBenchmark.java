@@ -0,0 +1,86 @@
+package bgu.spl.mics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolving a {@link Future} and getting its result, on one thread and
+ * across threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FutureBenchmark {
+
+    private static final Integer RESULT = 42;
+
+    private final AtomicReference<Future<Integer>> handOff = new AtomicReference<>();
+    private volatile boolean running;
+    private Thread resolver;
+
+    @Setup(Level.Trial)
+    public void startResolver() {
+        running = true;
+        resolver = new Thread(() -> {
+            while (running) {
+                Future<Integer> f = handOff.getAndSet(null);
+                if (f != null) {
+                    f.resolve(RESULT);
+                } else {
+                    Thread.yield();
+                }
+            }
+        }, "resolver");
+        resolver.setDaemon(true);
+        resolver.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopResolver() throws InterruptedException {
+        running = false;
+        resolver.join();
+    }
+
+    @Benchmark
+    public Integer resolveThenGet() {
+        Future<Integer> f = new Future<>();
+        f.resolve(RESULT);
+        return f.get();
+    }
+
+    /**
+     * The time from asking another thread to resolve a Future until the
+     * blocked {@link Future#get()} returns its result.
+     */
+    @Benchmark
+    public Integer getResolvedByOtherThread() {
+        Future<Integer> f = new Future<>();
+        handOff.set(f);
+        return f.get();
+    }
+
+    @Benchmark
+    public Integer onCompleteBeforeResolve() {
+        Future<Integer> f = new Future<>();
+        int[] seen = new int[1];
+        f.onComplete(v -> seen[0] = v);
+        f.resolve(RESULT);
+        return seen[0];
+    }
+}
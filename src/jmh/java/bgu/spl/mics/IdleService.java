@@ -0,0 +1,16 @@
+package bgu.spl.mics;
+
+/**
+ * A micro-service that is registered on the bus by a benchmark but never
+ * run: the benchmark takes its messages itself.
+ */
+final class IdleService extends MicroService {
+
+    IdleService(String name) {
+        super(name);
+    }
+
+    @Override
+    protected void initialize() {
+    }
+}
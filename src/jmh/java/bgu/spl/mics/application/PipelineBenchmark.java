@@ -0,0 +1,129 @@
+package bgu.spl.mics.application;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole fast-forward simulation: every tick each camera detects some
+ * objects, the LiDAR workers track them and the fusion service maps them.
+ * <p>
+ * The objects and the database are singletons that a run leaves behind, so
+ * every fork runs the simulation exactly once, on generated input files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class PipelineBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int sensors;
+
+    @Param({"200"})
+    public int ticks;
+
+    @Param({"4"})
+    public int objectsPerFrame;
+
+    @Param({"8"})
+    public int pointsPerObject;
+
+    @Param({"thread", "pool"})
+    public String executionMode;
+
+    private Path config;
+
+    @Setup
+    public void writeInput() throws IOException {
+        Path dir = Files.createTempDirectory("pipeline");
+        dir.toFile().deleteOnExit();
+        dir.resolve("output_file.json").toFile().deleteOnExit();
+        Map<String, Object> cameraData = new LinkedHashMap<>();
+        List<Map<String, Object>> lidarData = new ArrayList<>();
+        List<Map<String, Object>> poses = new ArrayList<>();
+        List<Map<String, Object>> cameras = new ArrayList<>();
+        List<Map<String, Object>> lidars = new ArrayList<>();
+        for (int s = 1; s <= sensors; s++) {
+            cameras.add(map("id", s, "frequency", 1, "camera_key", "camera" + s));
+            lidars.add(map("id", s, "frequency", 1));
+            List<Map<String, Object>> frames = new ArrayList<>();
+            for (int t = 1; t <= ticks; t++) {
+                List<Map<String, Object>> objects = new ArrayList<>();
+                for (int o = 0; o < objectsPerFrame; o++) {
+                    String id = "Object_" + s + "_" + o;
+                    objects.add(map("id", id, "description", "Object"));
+                    lidarData.add(map("time", t, "id", id, "cloudPoints", points(s, o, t)));
+                }
+                frames.add(map("time", t, "detectedObjects", objects));
+            }
+            cameraData.put("camera" + s, frames);
+        }
+        for (int t = 1; t <= ticks + 1; t++) {
+            poses.add(map("time", t, "x", t * 0.01, "y", t * 0.02, "yaw", t * 0.5));
+        }
+        write(dir.resolve("camera_data.json"), cameraData);
+        write(dir.resolve("lidar_data.json"), lidarData);
+        write(dir.resolve("pose_data.json"), poses);
+        config = dir.resolve("configuration_file.json");
+        write(config, map(
+                "Cameras", map("CamerasConfigurations", cameras, "camera_datas_path", "./camera_data.json"),
+                "LidarWorkers", map("LidarConfigurations", lidars, "lidars_data_path", "./lidar_data.json"),
+                "poseJsonFile", "./pose_data.json",
+                "TickTime", 1,
+                "Duration", ticks + 10,
+                "FastForward", true,
+                "ExecutionMode", executionMode));
+    }
+
+    @Benchmark
+    public void simulate() {
+        GurionRockRunner.main(new String[]{config.toString()});
+    }
+
+    private List<List<Double>> points(int sensor, int object, int tick) {
+        List<List<Double>> points = new ArrayList<>();
+        for (int p = 0; p < pointsPerObject; p++) {
+            points.add(Arrays.asList(sensor + object * 0.1 + p * 0.01, tick * 0.001 + p * 0.02, 0.104));
+        }
+        return points;
+    }
+
+    private static Map<String, Object> map(Object... keysAndValues) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            m.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return m;
+    }
+
+    private static void write(Path file, Object json) throws IOException {
+        file.toFile().deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            new Gson().toJson(json, writer);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package bgu.spl.mics.application.objects;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range and nearest-landmark queries over a map of landmarks spread over a
+ * square, through a {@link LandmarkGrid} and by scanning every landmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LandmarkGridBenchmark {
+    private static final double RADIUS = 5;
+    private static final int K = 8;
+
+    @Param({"1000", "100000"})
+    public int landmarks;
+
+    private double side;
+    private double[] x;
+    private double[] y;
+    private LandmarkGrid grid;
+    private final Random queries = new Random(7);
+
+    @Setup
+    public void map() {
+        Random random = new Random(42);
+        // about one landmark per 4 square meters, as in a dense map
+        side = Math.sqrt(landmarks * 4.0);
+        x = new double[landmarks];
+        y = new double[landmarks];
+        grid = new LandmarkGrid(FusionSlam.GRID_CELL_SIZE);
+        for (int i = 0; i < landmarks; i++) {
+            x[i] = random.nextDouble() * side;
+            y[i] = random.nextDouble() * side;
+            List<CloudPoint> points = new ArrayList<>(1);
+            points.add(new CloudPoint(x[i], y[i]));
+            grid.update(new LandMark("landmark" + i, "", points));
+        }
+    }
+
+    @Benchmark
+    public List<LandMark> gridWithin() {
+        return grid.within(queries.nextDouble() * side, queries.nextDouble() * side, RADIUS);
+    }
+
+    @Benchmark
+    public int scanWithin() {
+        double qx = queries.nextDouble() * side;
+        double qy = queries.nextDouble() * side;
+        int found = 0;
+        for (int i = 0; i < landmarks; i++) {
+            double dx = x[i] - qx;
+            double dy = y[i] - qy;
+            if (dx * dx + dy * dy <= RADIUS * RADIUS) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public List<LandMark> gridNearest() {
+        return grid.nearest(queries.nextDouble() * side, queries.nextDouble() * side, K);
+    }
+
+    @Benchmark
+    public double[] scanNearest() {
+        double qx = queries.nextDouble() * side;
+        double qy = queries.nextDouble() * side;
+        // the K smallest squared distances, kept sorted by insertion
+        double[] best = new double[K];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < landmarks; i++) {
+            double dx = x[i] - qx;
+            double dy = y[i] - qy;
+            double distance2 = dx * dx + dy * dy;
+            if (distance2 < best[K - 1]) {
+                int j = K - 1;
+                for (; j > 0 && best[j - 1] > distance2; j--) {
+                    best[j] = best[j - 1];
+                }
+                best[j] = distance2;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,70 @@
+package bgu.spl.mics.application.objects;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Averaging a new observation into a known landmark, by building a new list
+ * of {@link CloudPoint}s as fusion used to, and in place in the landmark's
+ * packed arrays. Run with {@code -prof gc} to compare the garbage each one makes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LandmarkRefineBenchmark {
+
+    @Param({"4", "64", "1024"})
+    public int points;
+
+    private double[] x;
+    private double[] y;
+    private List<CloudPoint> known;
+    private LandMark landmark;
+
+    @Setup
+    public void observation() {
+        Random random = new Random(42);
+        x = new double[points];
+        y = new double[points];
+        known = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            x[i] = random.nextDouble() * 10;
+            y[i] = random.nextDouble() * 10;
+            known.add(new CloudPoint(random.nextDouble() * 10, random.nextDouble() * 10));
+        }
+        landmark = new LandMark("Wall_1", "Wall", known);
+    }
+
+    @Benchmark
+    public List<CloudPoint> pointList() {
+        List<CloudPoint> result = new ArrayList<>(points);
+        for (int i = 0; i < points; i++) {
+            CloudPoint a = known.get(i);
+            result.add(new CloudPoint((a.getX() + x[i]) / 2, (a.getY() + y[i]) / 2));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public LandMark packedInPlace() {
+        landmark.refine(x, y, points);
+        return landmark;
+    }
+}
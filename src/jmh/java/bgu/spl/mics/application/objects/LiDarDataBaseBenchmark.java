@@ -0,0 +1,140 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the points of an object at a given time, in the time-indexed
+ * {@link LiDarDataBase} and in a list of objects holding
+ * {@code List<List<Double>>} points, searched the way the database used to,
+ * and through a worker's {@link LiDarDataBase.Cursor}, looking up the records
+ * in time order as a worker does. Run with {@code -t} to see how lookups
+ * scale with the number of workers.
+ * <p>
+ * The database is a singleton, so every fork loads one generated file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiDarDataBaseBenchmark {
+
+    static final class ObjectRecord {
+        String id;
+        int time;
+        List<List<Double>> cloudPoints;
+    }
+
+    @Param({"1000", "100000"})
+    public int records;
+
+    @Param({"20"})
+    public int objectsPerTime;
+
+    @Param({"30"})
+    public int pointsPerRecord;
+
+    /**
+     * A worker's cursor and the next record it looks up.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+        LiDarDataBase.Cursor cursor;
+        int record;
+
+        @Setup
+        public void open(LiDarDataBaseBenchmark benchmark) {
+            cursor = benchmark.packed.cursor();
+        }
+    }
+
+    private LiDarDataBase packed;
+    private List<ObjectRecord> objects;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void load() throws IOException {
+        Path file = Files.createTempFile("lidar", ".json");
+        file.toFile().deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write('[');
+            for (int r = 0; r < records; r++) {
+                writer.write(r == 0 ? "" : ",");
+                writer.write("{\"time\":" + (r / objectsPerTime + 1) + ",\"id\":\"Object_" + (r % objectsPerTime)
+                        + "\",\"cloudPoints\":[");
+                for (int p = 0; p < pointsPerRecord; p++) {
+                    writer.write((p == 0 ? "[" : ",[") + random.nextDouble() + "," + random.nextDouble() + ",0.104]");
+                }
+                writer.write("]}");
+            }
+            writer.write(']');
+        }
+        packed = LiDarDataBase.getInstance(file.toString());
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            objects = new Gson().fromJson(reader, new TypeToken<List<ObjectRecord>>() { }.getType());
+        }
+    }
+
+    @Benchmark
+    public double packedLookup() {
+        int r = random.nextInt(records);
+        StampedCloudPoints found = packed.track("Object_" + (r % objectsPerTime), r / objectsPerTime + 1);
+        double sum = 0;
+        for (int i = 0; i < found.getPointCount(); i++) {
+            sum += found.getX(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double cursorLookup(Worker worker) {
+        int r = worker.record;
+        worker.record = r + 1 == records ? 0 : r + 1;
+        StampedCloudPoints found = worker.cursor.track("Object_" + (r % objectsPerTime), r / objectsPerTime + 1);
+        double sum = 0;
+        for (int i = 0; i < found.getPointCount(); i++) {
+            sum += found.getX(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double objectLookup() {
+        int r = random.nextInt(records);
+        String id = "Object_" + (r % objectsPerTime);
+        int time = r / objectsPerTime + 1;
+        for (ObjectRecord record : objects) {
+            if (record.time == time && record.id.equals(id)) {
+                double sum = 0;
+                for (List<Double> point : record.cloudPoints) {
+                    sum += point.get(0);
+                }
+                return sum;
+            }
+        }
+        return 0;
+    }
+}
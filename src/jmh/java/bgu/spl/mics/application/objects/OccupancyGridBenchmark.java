@@ -0,0 +1,64 @@
+package bgu.spl.mics.application.objects;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding a scan of a wall 4 m in front of the robot to an
+ * {@link OccupancyGrid}: a hit per point and a miss per cell on the way to
+ * it. The robot moves along the wall from one scan to the next, so new tiles
+ * keep being allocated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OccupancyGridBenchmark {
+
+    @Param({"100", "400"})
+    public int points;
+
+    @Param({"0.05", "0.2"})
+    public double cellSize;
+
+    private double[] x;
+    private double[] y;
+    private OccupancyGrid grid;
+    private double robotX = 0;
+
+    @Setup
+    public void scan() {
+        Random random = new Random(42);
+        x = new double[points];
+        y = new double[points];
+        for (int i = 0; i < points; i++) {
+            x[i] = -2 + 4.0 * i / points;
+            y[i] = 4 + random.nextGaussian() * 0.01;
+        }
+        grid = new OccupancyGrid(cellSize);
+    }
+
+    @Benchmark
+    public OccupancyGrid addScan() {
+        robotX += 0.01;
+        for (int i = 0; i < points; i++) {
+            x[i] += 0.01;
+        }
+        grid.addScan(robotX, 0, x, y, points);
+        return grid;
+    }
+}
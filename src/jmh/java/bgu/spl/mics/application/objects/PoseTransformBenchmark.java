@@ -0,0 +1,68 @@
+package bgu.spl.mics.application.objects;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transforming a frame of points to the global coordinate system, as a list
+ * of {@link CloudPoint}s and as packed coordinate arrays into reused buffers.
+ * Run with {@code -prof gc} to compare the garbage each one makes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoseTransformBenchmark {
+
+    @Param({"100", "10000", "50000"})
+    public int points;
+
+    private final Pose pose = new Pose(1.5f, -2.25f, 37.5f, 1);
+    private List<CloudPoint> list;
+    private double[] x;
+    private double[] y;
+    private double[] globalX;
+    private double[] globalY;
+
+    @Setup
+    public void frame() {
+        Random random = new Random(42);
+        list = new ArrayList<>(points);
+        x = new double[points];
+        y = new double[points];
+        globalX = new double[points];
+        globalY = new double[points];
+        for (int i = 0; i < points; i++) {
+            x[i] = random.nextDouble() * 10;
+            y[i] = random.nextDouble() * 10;
+            list.add(new CloudPoint(x[i], y[i]));
+        }
+    }
+
+    @Benchmark
+    public List<CloudPoint> pointList() {
+        return FusionSlam.toGlobal(list, pose);
+    }
+
+    @Benchmark
+    public double[] packedArrays() {
+        FusionSlam.toGlobal(pose, x, y, points, globalX, globalY);
+        return globalX;
+    }
+}
@@ -0,0 +1,72 @@
+package bgu.spl.mics.application.objects;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning one object's recorded points into the points fusion maps, with
+ * every recorded point and thinned out by a {@link VoxelGrid}. Each includes
+ * building the reported points and transforming them to the global
+ * coordinate system, so it shows what thinning the points out costs and
+ * what it saves downstream. The object is a dense scan of a 4 m wall.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoxelGridBenchmark {
+
+    @Param({"400", "4000"})
+    public int points;
+
+    @Param({"0.05", "0.2"})
+    public double leafSize;
+
+    private final Pose pose = new Pose(1.5f, -2.25f, 37.5f, 1);
+    private StampedCloudPoints record;
+    private VoxelGrid grid;
+
+    @Setup
+    public void scan() {
+        Random random = new Random(42);
+        double[] coordinates = new double[2 * points];
+        for (int i = 0; i < points; i++) {
+            coordinates[2 * i] = 2 + random.nextGaussian() * 0.003;
+            coordinates[2 * i + 1] = -2 + 4.0 * i / points + random.nextGaussian() * 0.003;
+        }
+        CloudPointStore store = new PackedCloudPointStore(coordinates, new int[]{1}, new String[]{"Wall_1"},
+                new int[]{0}, new int[]{points});
+        record = new StampedCloudPoints("Wall_1", 1, store, 0, points);
+        grid = new VoxelGrid(leafSize);
+    }
+
+    @Benchmark
+    public List<CloudPoint> everyPoint() {
+        List<CloudPoint> coordinates = new ArrayList<>(record.getPointCount());
+        for (int i = 0; i < record.getPointCount(); i++) {
+            coordinates.add(new CloudPoint(record.getX(i), record.getY(i)));
+        }
+        return FusionSlam.toGlobal(coordinates, pose);
+    }
+
+    @Benchmark
+    public List<CloudPoint> voxelGrid() {
+        return FusionSlam.toGlobal(grid.downsample(record), pose);
+    }
+}
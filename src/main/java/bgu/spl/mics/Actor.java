@@ -0,0 +1,80 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a {@link MicroService} as a mailbox-driven actor on a shared
+ * {@link Executor}, instead of on a thread of its own.
+ * <p>
+ * The actor is submitted to the executor only when its mailbox receives a
+ * message while it is idle. Each run handles a bounded batch of the waiting
+ * messages and then yields the worker thread, resubmitting itself if more
+ * messages are waiting.
+ */
+final class Actor implements Runnable {
+    private static final int BATCH = 64;
+
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int DONE = 2;
+
+    private final MicroService service;
+    private final Executor executor;
+    private final Runnable onDone;
+    private final AtomicInteger state = new AtomicInteger(SCHEDULED); // deliveries during start must not schedule it
+
+    Actor(MicroService service, Executor executor, Runnable onDone) {
+        this.service = service;
+        this.executor = executor;
+        this.onDone = onDone;
+    }
+
+    void start() {
+        executor.execute(() -> {
+            boolean terminated;
+            try {
+                terminated = service.openActor(this::activate);
+            } catch (RuntimeException | Error e) {
+                finish();
+                throw e;
+            }
+            if (terminated) {
+                finish();
+            } else {
+                run();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        boolean terminated;
+        try {
+            terminated = service.runActor(BATCH);
+        } catch (RuntimeException | Error e) {
+            finish();
+            throw e;
+        }
+        if (terminated) {
+            finish();
+            return;
+        }
+        state.set(IDLE);
+        // a message may have arrived after the last poll but before going idle
+        if (service.hasMessages()) {
+            activate();
+        }
+    }
+
+    private void activate() {
+        if (state.compareAndSet(IDLE, SCHEDULED)) {
+            executor.execute(this);
+        }
+    }
+
+    private void finish() {
+        state.set(DONE);
+        onDone.run();
+    }
+}
@@ -0,0 +1,130 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default {@link Mailbox}, backed by a {@link LinkedBlockingQueue}.
+ * Every delivery and every take goes through the queue's locks.
+ * A waiting owner is woken for a broadcast by queueing a private marker
+ * message, at most one at a time.
+ * Events are queued together with their order number, taken under a lock of
+ * the mailbox's own, their type id, and with the time they were sent at when the mailbox is
+ * measured. The owner looks at the next event before taking it, so it keeps
+ * that event aside once it is out of the queue.
+ */
+class BlockingMailbox extends Mailbox {
+    private static final Message WAKE_UP = new Message() { };
+
+    private static final class Stamped implements Message {
+        private final Message message;
+        private final long order;
+        private final int type;
+        private final long sentAt;
+
+        private Stamped(Message message, long order, int type, long sentAt) {
+            this.message = message;
+            this.order = order;
+            this.type = type;
+            this.sentAt = sentAt;
+        }
+    }
+
+    private final BlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+    private final Object putLock = new Object(); // keeps the order numbers in queue order
+    private final AtomicBoolean wakeUpQueued = new AtomicBoolean();
+    private volatile boolean waiting;
+    private volatile Stamped next; // out of the queue but not taken yet, set only by the owner
+    private long sentAt; // of the message taken last, touched only by the owner
+    private int type;    // of the message taken last, touched only by the owner
+
+    BlockingMailbox(AtomicLong order, Quiescence quiescence, BusMetrics metrics, String owner) {
+        super(order, quiescence, metrics, owner);
+    }
+
+    @Override
+    void enqueue(Message m, int type, long sentAt) {
+        synchronized (putLock) {
+            queue.add(new Stamped(m, nextOrder(), type, sentAt));
+        }
+    }
+
+    @Override
+    long peekOrder() {
+        Stamped head = head();
+        return head == null ? -1 : head.order;
+    }
+
+    @Override
+    Message poll() {
+        Stamped head = head();
+        if (head == null) {
+            return null;
+        }
+        next = null;
+        sentAt = head.sentAt;
+        type = head.type;
+        return head.message;
+    }
+
+    @Override
+    void await() throws InterruptedException {
+        waiting = true;
+        try {
+            if (next != null || broadcastPending()) {
+                return;
+            }
+            Message m = queue.take();
+            if (m == WAKE_UP) {
+                wakeUpQueued.set(false);
+            } else {
+                next = (Stamped) m;
+            }
+        } finally {
+            waiting = false;
+        }
+    }
+
+    @Override
+    long sentAt() {
+        return sentAt;
+    }
+
+    @Override
+    int type() {
+        return type;
+    }
+
+    @Override
+    boolean isEmpty() {
+        if (next != null) {
+            return false;
+        }
+        Message head = queue.peek();
+        return head == null || (head == WAKE_UP && queue.size() == 1);
+    }
+
+    @Override
+    void wakeUp() {
+        if (waiting && wakeUpQueued.compareAndSet(false, true)) {
+            queue.add(WAKE_UP);
+        }
+    }
+
+    /**
+     * @return the next queued event, kept aside until it is polled, or null.
+     */
+    private Stamped head() {
+        if (next == null) {
+            Message m = queue.poll();
+            if (m == WAKE_UP) {
+                wakeUpQueued.set(false);
+                m = queue.poll();
+            }
+            next = (Stamped) m;
+        }
+        return next;
+    }
+}
@@ -0,0 +1,232 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sequenced ring buffer holding the {@link Broadcast}s of a single type.
+ * <p>
+ * A broadcast is published once into the ring, no matter how many
+ * micro-services subscribed to its type. Each subscriber reads the ring
+ * through its own {@link Cursor}, in the style of a disruptor: the cursor is the
+ * sequence of the next broadcast the subscriber has not taken yet.
+ * <p>
+ * The ring never overwrites a broadcast that some cursor still has to read.
+ * If the slowest subscriber is a whole ring behind, the ring doubles instead
+ * of blocking the publisher. Every broadcast is also stamped with the
+ * bus-wide order number its events are stamped with too (see {@link Mailbox}),
+ * taken while the ring is locked so that each ring stays in order. A service
+ * therefore takes the broadcasts of all its rings and its queued events in
+ * the order they were sent.
+ * <p>
+ * The ring knows the {@link MessageTypes} id of its type, which its
+ * subscribers dispatch the broadcasts they take by.
+ * <p>
+ * When the bus records {@link BusMetrics}, every slot also holds the time its
+ * broadcast was sent at.
+ */
+final class BroadcastRing {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Cursor[] NO_CURSORS = new Cursor[0];
+
+    private static final class Buffer {
+        private final Broadcast[] items;
+        private final long[] order;
+        private final long[] sentAt; // null if not measured
+        private final int mask;
+
+        private Buffer(int capacity, boolean measured) {
+            items = new Broadcast[capacity];
+            order = new long[capacity];
+            sentAt = measured ? new long[capacity] : null;
+            mask = capacity - 1;
+        }
+    }
+
+    /**
+     * A single subscriber's read position in a ring.
+     */
+    static final class Cursor {
+        private final BroadcastRing ring;
+        private final Mailbox owner;
+        private volatile long next;
+
+        private Cursor(BroadcastRing ring, Mailbox owner, long next) {
+            this.ring = ring;
+            this.owner = owner;
+            this.next = next;
+        }
+
+        /**
+         * @return the bus-wide order of the next unread broadcast, or -1 if
+         *         the subscriber has read everything published so far.
+         */
+        long peekOrder() {
+            long n = next;
+            if (n >= ring.published) {
+                return -1;
+            }
+            Buffer b = ring.buffer;
+            return b.order[(int) n & b.mask];
+        }
+
+        /**
+         * Takes the next broadcast. Must only be called by the owner, after
+         * {@link #peekOrder()} returned a non-negative value.
+         */
+        Broadcast take() {
+            long n = next;
+            Buffer b = ring.buffer;
+            Broadcast item = b.items[(int) n & b.mask];
+            next = n + 1;
+            return item;
+        }
+
+        /**
+         * @return the time the next unread broadcast was sent at. Must only be
+         *         called by the owner, on a measured ring, after
+         *         {@link #peekOrder()} returned a non-negative value.
+         */
+        long sentAt() {
+            Buffer b = ring.buffer;
+            return b.sentAt[(int) next & b.mask];
+        }
+
+        /**
+         * @return the number of published broadcasts the owner has not taken yet.
+         */
+        long unread() {
+            return ring.published - next;
+        }
+
+        BroadcastRing ring() {
+            return ring;
+        }
+    }
+
+    private volatile Buffer buffer;
+    private volatile long published; // sequence of the next broadcast to publish
+    private volatile Cursor[] cursors = NO_CURSORS;
+    private long gatingSequence;     // cached lowest cursor, guarded by this
+    private final int type;              // the id of the ring's broadcast type
+    private final AtomicLong order;      // the bus-wide order numbers
+    private final Quiescence quiescence; // null if the bus doesn't track quiescence
+    private final BusMetrics.Probe probe; // statistics of the ring's type, null if not recorded
+
+    BroadcastRing(int type, AtomicLong order, Quiescence quiescence, BusMetrics.Probe probe) {
+        this.type = type;
+        this.order = order;
+        this.quiescence = quiescence;
+        this.probe = probe;
+        this.buffer = new Buffer(INITIAL_CAPACITY, probe != null);
+    }
+
+    /**
+     * @return the id of the ring's broadcast type in {@link MessageTypes}.
+     */
+    int type() {
+        return type;
+    }
+
+    BusMetrics.Probe probe() {
+        return probe;
+    }
+
+    /**
+     * Appends {@code b} to the ring, stamped with the next bus-wide order
+     * number, and wakes the subscribers that are waiting.
+     * <p>
+     * @param b the broadcast to publish.
+     */
+    void publish(Broadcast b) {
+        Cursor[] targets;
+        synchronized (this) {
+            long seq = published;
+            Buffer current = buffer;
+            if (seq - gatingSequence >= current.items.length) {
+                gatingSequence = lowestCursor(seq);
+                if (seq - gatingSequence >= current.items.length) {
+                    current = grow(current, seq);
+                }
+            }
+            if (quiescence != null) {
+                quiescence.delivered(cursors.length);
+            }
+            int slot = (int) seq & current.mask;
+            current.items[slot] = b;
+            current.order[slot] = order.getAndIncrement();
+            targets = cursors;
+            if (probe != null) {
+                current.sentAt[slot] = System.nanoTime();
+                probe.delivered(targets.length);
+                for (Cursor c : targets) {
+                    c.owner.broadcastDelivered();
+                }
+            }
+            published = seq + 1;
+        }
+        for (Cursor c : targets) {
+            c.owner.signal();
+        }
+    }
+
+    /**
+     * Adds a cursor for {@code owner} that starts at the next broadcast to be
+     * published, so the subscriber only receives broadcasts sent after it
+     * subscribed.
+     */
+    synchronized Cursor subscribe(Mailbox owner) {
+        for (Cursor c : cursors) {
+            if (c.owner == owner) {
+                return null;
+            }
+        }
+        Cursor cursor = new Cursor(this, owner, published);
+        Cursor[] updated = new Cursor[cursors.length + 1];
+        System.arraycopy(cursors, 0, updated, 0, cursors.length);
+        updated[cursors.length] = cursor;
+        cursors = updated;
+        return cursor;
+    }
+
+    /**
+     * Removes {@code cursor} from the ring.
+     *
+     * @return the number of broadcasts the cursor had not read yet.
+     */
+    synchronized long unsubscribe(Cursor cursor) {
+        Cursor[] current = cursors;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == cursor) {
+                Cursor[] updated = new Cursor[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                cursors = updated;
+                return cursor.unread();
+            }
+        }
+        return 0;
+    }
+
+    private long lowestCursor(long seq) {
+        long lowest = seq;
+        for (Cursor c : cursors) {
+            lowest = Math.min(lowest, c.next);
+        }
+        return lowest;
+    }
+
+    private Buffer grow(Buffer current, long seq) {
+        Buffer bigger = new Buffer(current.items.length << 1, current.sentAt != null);
+        for (long s = gatingSequence; s < seq; s++) {
+            int from = (int) s & current.mask;
+            int to = (int) s & bigger.mask;
+            bigger.items[to] = current.items[from];
+            bigger.order[to] = current.order[from];
+            if (current.sentAt != null) {
+                bigger.sentAt[to] = current.sentAt[from];
+            }
+        }
+        buffer = bigger;
+        return bigger;
+    }
+}
@@ -0,0 +1,156 @@
+package bgu.spl.mics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency and queue-depth statistics of the {@link MessageBusImpl}.
+ * <p>
+ * For every message type and every micro-service the bus keeps:
+ * <ul>
+ * <li>how many messages were delivered and are not taken yet (the queue
+ * depth), and the largest such number seen;</li>
+ * <li>a histogram of the time from sending a message to its receiver taking
+ * it out of its queue, in power-of-two buckets of nanoseconds.</li>
+ * </ul>
+ * Micro-services that share a name are reported together.
+ * <p>
+ * Recording is switched on with {@code -Dbgu.spl.mics.metrics=true}, which must
+ * be set before the bus is first used. When it is off {@link #getInstance()}
+ * returns null and the bus skips every measurement with a single null check.
+ */
+public final class BusMetrics {
+    private static final String PROPERTY = "bgu.spl.mics.metrics";
+
+    private static class BusMetricsHolder {
+        private static final BusMetrics instance = Boolean.getBoolean(PROPERTY) ? new BusMetrics() : null;
+    }
+
+    private final ConcurrentHashMap<String, Probe> services = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, Probe> types = new ConcurrentHashMap<>();
+    private final ClassValue<Probe> byType = new ClassValue<Probe>() {
+        @Override
+        protected Probe computeValue(Class<?> type) {
+            return types.computeIfAbsent(type, k -> new Probe());
+        }
+    };
+
+    private BusMetrics() {
+    }
+
+    /**
+     * @return the bus statistics, or null if they are not recorded.
+     */
+    public static BusMetrics getInstance() {
+        return BusMetricsHolder.instance;
+    }
+
+    /**
+     * @return a JSON-friendly copy of the statistics recorded so far, with the
+     *         entries {@code "messageTypes"} and {@code "microServices"}, each
+     *         mapping a name to its statistics.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> byTypeName = new TreeMap<>();
+        for (Map.Entry<Class<?>, Probe> e : types.entrySet()) {
+            byTypeName.put(e.getKey().getSimpleName(), e.getValue().snapshot());
+        }
+        Map<String, Object> byService = new TreeMap<>();
+        for (Map.Entry<String, Probe> e : services.entrySet()) {
+            byService.put(e.getKey(), e.getValue().snapshot());
+        }
+        Map<String, Object> result = new TreeMap<>();
+        result.put("messageTypes", byTypeName);
+        result.put("microServices", byService);
+        return result;
+    }
+
+    Probe forService(String name) {
+        return services.computeIfAbsent(name, k -> new Probe());
+    }
+
+    Probe forType(Class<?> type) {
+        return byType.get(type);
+    }
+
+    /**
+     * The statistics of one message type or one micro-service.
+     */
+    static final class Probe {
+        private static final int BUCKETS = 64;
+
+        private final AtomicLong depth = new AtomicLong();
+        private final AtomicLong maxDepth = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS); // bucket i: latency < 2^i ns
+        private final AtomicLong taken = new AtomicLong();
+        private final AtomicLong totalLatency = new AtomicLong();
+        private final AtomicLong maxLatency = new AtomicLong();
+
+        /**
+         * Records that {@code count} messages were delivered.
+         */
+        void delivered(long count) {
+            long d = depth.addAndGet(count);
+            if (d > maxDepth.get()) {
+                maxDepth.accumulateAndGet(d, Math::max);
+            }
+        }
+
+        /**
+         * Records that a message was taken {@code latency} nanoseconds after it was sent.
+         */
+        void taken(long latency) {
+            depth.decrementAndGet();
+            if (latency < 0) {
+                latency = 0;
+            }
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(latency));
+            taken.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            if (latency > maxLatency.get()) {
+                maxLatency.accumulateAndGet(latency, Math::max);
+            }
+        }
+
+        /**
+         * Records that {@code count} delivered messages were dropped without being taken.
+         */
+        void dropped(long count) {
+            depth.addAndGet(-count);
+        }
+
+        private Map<String, Object> snapshot() {
+            long count = taken.get();
+            Map<String, Object> latency = new TreeMap<>();
+            latency.put("mean", count == 0 ? 0 : totalLatency.get() / count);
+            latency.put("p50", percentile(count, 0.50));
+            latency.put("p99", percentile(count, 0.99));
+            latency.put("max", maxLatency.get());
+            Map<String, Object> result = new TreeMap<>();
+            result.put("messagesTaken", count);
+            result.put("queueDepth", depth.get());
+            result.put("maxQueueDepth", maxDepth.get());
+            result.put("latencyNanos", latency);
+            return result;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the {@code fraction}
+         *         percentile, a power of two.
+         */
+        private long percentile(long count, double fraction) {
+            long rank = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package bgu.spl.mics;
+
+/**
+ * Records every {@link Event} and {@link Broadcast} sent through the
+ * {@link MessageBusImpl}, e.g. to a log that can be replayed later.
+ * <p>
+ * The bus hands each message to the recorder together with the name of the
+ * micro-service that sent it, while holding the recorder's monitor around
+ * both the recording and the delivery, so messages are recorded in exactly
+ * the order they are delivered. This serializes sending, so a recorder is
+ * meant for debugging and profiling runs only.
+ * <p>
+ * A recorder must be installed before the bus is first used. When none is,
+ * the bus skips recording with a single null check.
+ */
+public abstract class BusRecorder {
+    private static volatile BusRecorder installed;
+
+    /**
+     * Makes the bus record every message with {@code recorder}. Must be called
+     * before the bus is first used.
+     */
+    public static void install(BusRecorder recorder) {
+        installed = recorder;
+    }
+
+    /**
+     * @return the installed recorder, or null if there is none.
+     */
+    static BusRecorder getInstance() {
+        return installed;
+    }
+
+    /**
+     * Records one message. Called with the recorder's monitor held, so
+     * implementations need no locking of their own. Must not throw.
+     *
+     * @param message the event or broadcast being sent.
+     * @param source  the name of the micro-service sending it, or null if it
+     *                is sent from outside any micro-service.
+     */
+    protected abstract void record(Message message, String source);
+}
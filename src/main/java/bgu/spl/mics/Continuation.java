@@ -0,0 +1,19 @@
+package bgu.spl.mics;
+
+/**
+ * An internal message carrying a piece of work, such as a {@link Future}
+ * completion callback, to be run on the event loop of the micro-service it
+ * was delivered to. Continuations are never subscribed to; the
+ * {@link MicroService} event loop runs them directly.
+ */
+final class Continuation implements Message {
+    private final Runnable action;
+
+    Continuation(Runnable action) {
+        this.action = action;
+    }
+
+    void run() {
+        action.run();
+    }
+}
@@ -5,7 +5,7 @@ package bgu.spl.mics;
  * Event message expects to receive a result of type {@code <T>} when a
  * micro-service that received the request has completed handling it.
  * When sending an event, it will be received only by a single subscriber in a
- * Round-Robin fashion.
+ * Round-Robin fashion, unless it is a {@link RoutedEvent}.
  */
 public interface Event<T> extends Message {
 
@@ -0,0 +1,28 @@
+package bgu.spl.mics;
+
+/**
+ * Tracks which {@link MicroService} event loop the current thread is running,
+ * so work can be handed back to that loop later (see {@link Continuation}).
+ */
+final class EventLoop {
+    private static final ThreadLocal<MicroService> CURRENT = new ThreadLocal<>();
+
+    private EventLoop() {
+    }
+
+    /**
+     * @return the micro-service whose event loop runs on the current thread,
+     *         or null if the current thread is not running one.
+     */
+    static MicroService current() {
+        return CURRENT.get();
+    }
+
+    static void enter(MicroService m) {
+        CURRENT.set(m);
+    }
+
+    static void exit() {
+        CURRENT.remove();
+    }
+}
@@ -1,18 +1,38 @@
 package bgu.spl.mics;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * A Future object represents a promised result - an object that will
  * eventually be resolved to hold a result of some operation. The class allows
  * Retrieving the result once it is available.
- * 
- * Only private methods may be added to this class.
+ * <p>
+ * Instead of blocking in {@link #get()}, a micro-service may register a
+ * completion callback with {@link #onComplete(Callback)},
+ * {@link #thenAccept(Callback)} or {@link #thenApply(Function)}. A callback
+ * registered from a micro-service's event loop is run on that same event
+ * loop, as one of its messages, so it never races the service's other
+ * callbacks and never blocks its thread.
+ * <p>
+ * A Future derived with {@link #thenAccept(Callback)} or
+ * {@link #thenApply(Function)} is resolved with null if its callback throws,
+ * and keeps the exception, which {@link #getFailure()} returns and which
+ * fails every Future derived from it in turn.
+ *
+ * Only private methods may be added to this class, apart from the public
+ * completion methods above ({@link #onComplete(Callback)},
+ * {@link #thenAccept(Callback)}, {@link #thenApply(Function)} and
+ * {@link #getFailure()}), which are part of its contract.
  * No public constructor is allowed except for the empty constructor.
  */ //hi chen
 public class Future<T> {
 	private T result;
+	private Throwable failure; // set, if at all, before isDone
 	private volatile boolean isDone = false;
+	private List<Runnable> listeners; // guarded by this, null once resolved
 
 	/**
 	 * This should be the only public constructor in this class.
@@ -20,14 +40,17 @@ public class Future<T> {
 	public Future() {
 		result = null;
 	}
-	
+
 	/**
      * retrieves the result the Future object holds if it has been resolved.
      * This is a blocking method! It waits for the computation in case it has
      * not been completed.
      * <p>
+     * If the calling thread is interrupted while waiting, the wait is
+     * abandoned: the interrupt status is restored and null is returned.
+     * <p>
      * @return return the result of type T if it is available, if not wait until it is available.
-     * 	       
+     *
      */
 	public T get() {
 		synchronized (this){ // Synchronize on the current object
@@ -36,32 +59,57 @@ public class Future<T> {
 					this.wait();
 				}
 			} catch (InterruptedException e){
-				//Thread.currentThread().interrupt(); // Restore interrupt status **NEED TO IMPLEMENT THE EXCEPTION*****************************************
+				Thread.currentThread().interrupt(); // let the caller's event loop see it
+				return null;
 			}
+			return result;
 		}
-		return result;
 	}
-	
+
 	/**
      * Resolves the result of this Future object.
      */
 	public void resolve (T result) {
+		complete(result, null);
+	}
+
+	/**
+	 * @return the exception the callback of {@link #thenAccept(Callback)} or
+	 *         {@link #thenApply(Function)} threw instead of resolving this
+	 *         Future, or the one that failed the Future it was derived from;
+	 *         null if it was resolved normally or is not resolved yet.
+	 */
+	public Throwable getFailure() {
+		return isDone ? failure : null;
+	}
+
+	private void complete(T result, Throwable failure) {
+		List<Runnable> toRun;
 		synchronized (this) {
-			if(!isDone){ //check if is done to avoid unnecessary notifications
-				this.result = result;
-				isDone= true;
-				notifyAll();
+			if(isDone){ //check if is done to avoid unnecessary notifications
+				return;
+			}
+			this.result = result;
+			this.failure = failure;
+			isDone= true;
+			toRun = listeners;
+			listeners = null;
+			notifyAll();
+		}
+		if (toRun != null) {
+			for (Runnable listener : toRun) {
+				listener.run();
 			}
 		}
 	}
-	
+
 	/**
      * @return true if this object has been resolved, false otherwise
      */
 	public boolean isDone() {
 		return isDone;
 	}
-	
+
 	/**
      * retrieves the result the Future object holds if it has been resolved,
      * This method is non-blocking, it has a limited amount of time determined
@@ -69,23 +117,103 @@ public class Future<T> {
      * <p>
      * @param timout 	the maximal amount of time units to wait for the result.
      * @param unit		the {@link TimeUnit} time units to wait.
-     * @return return the result of type T if it is available, if not, 
+     * @return return the result of type T if it is available, if not,
      * 	       wait for {@code timeout} TimeUnits {@code unit}. If time has
-     *         elapsed, return null.
+     *         elapsed, return null. If the calling thread is interrupted
+     *         while waiting, its interrupt status is restored and null is
+     *         returned.
      */
 	public T get(long timeout, TimeUnit unit) {
-		long time = unit.toMillis(timeout);
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
 
 		synchronized (this) {
 			try {
-				if (!isDone) {
-					this.wait(time);
+				long left = deadline - System.nanoTime();
+				while (!isDone && left > 0) { // wait() may wake up early, keep waiting until the deadline
+					TimeUnit.NANOSECONDS.timedWait(this, left);
+					left = deadline - System.nanoTime();
 				}
 			} catch (InterruptedException e) {
-				//*********************************************************************************************************************************8
+				Thread.currentThread().interrupt();
 				return null;
 			}
 			return isDone ? result : null; //if it resolved return result, otherwise null
 		}
 	}
+
+	/**
+	 * Registers {@code callback} to be called with the result once this
+	 * Future is resolved.
+	 * <p>
+	 * When called from a micro-service's event loop, the callback is run
+	 * later on that event loop, even if the Future is already resolved. If
+	 * that micro-service has terminated by then, the callback is dropped.
+	 * When called from any other thread, the callback is run by the thread
+	 * resolving the Future, or right away if it is already resolved.
+	 * <p>
+	 * @param callback the callback to call with the result.
+	 */
+	public void onComplete(Callback<T> callback) {
+		MicroService owner = EventLoop.current();
+		Runnable listener = owner == null
+				? () -> callback.call(result)
+				: () -> MessageBusImpl.getInstance().post(owner, new Continuation(() -> callback.call(result)));
+		synchronized (this) {
+			if (!isDone) {
+				if (listeners == null) {
+					listeners = new ArrayList<>(2);
+				}
+				listeners.add(listener);
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	/**
+	 * Registers {@code action} to consume the result once this Future is
+	 * resolved, as in {@link #onComplete(Callback)}. If this Future failed
+	 * (see {@link #getFailure()}), {@code action} is not called.
+	 * <p>
+	 * @param action the callback to call with the result.
+	 * @return a Future resolved (to null) once {@code action} has run, or
+	 *         failed with what {@code action} threw, or with this Future's
+	 *         failure.
+	 */
+	public Future<Void> thenAccept(Callback<T> action) {
+		return thenApply(value -> {
+			action.call(value);
+			return null;
+		});
+	}
+
+	/**
+	 * Registers {@code fn} to transform the result once this Future is
+	 * resolved, as in {@link #onComplete(Callback)}. If this Future failed
+	 * (see {@link #getFailure()}), {@code fn} is not called.
+	 * <p>
+	 * @param <U> the type of the transformed result.
+	 * @param fn  the transformation to apply to the result.
+	 * @return a Future resolved with the value returned by {@code fn}, or
+	 *         failed with what {@code fn} threw, or with this Future's
+	 *         failure. A failed Future holds null.
+	 */
+	public <U> Future<U> thenApply(Function<? super T, ? extends U> fn) {
+		Future<U> next = new Future<>();
+		onComplete(value -> {
+			if (failure != null) {
+				next.complete(null, failure);
+				return;
+			}
+			U mapped;
+			try {
+				mapped = fn.apply(value);
+			} catch (RuntimeException e) {
+				next.complete(null, e);
+				return;
+			}
+			next.resolve(mapped);
+		});
+		return next;
+	}
 }
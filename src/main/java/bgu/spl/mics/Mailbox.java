@@ -0,0 +1,367 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Mailbox is the message-queue the {@link MessageBusImpl} allocates for a
+ * single registered {@link MicroService}.
+ * Any thread may deliver messages into a mailbox, but only the micro-service
+ * that owns it takes messages out of it.
+ * <p>
+ * Events are queued in the mailbox itself. Broadcasts are not copied into it:
+ * the mailbox holds a {@link BroadcastRing.Cursor} into the ring of every
+ * broadcast type its owner subscribed to, and reads them from there.
+ * Every event is stamped, as it is queued, with the bus-wide order number
+ * the rings stamp their broadcasts with. The number is taken atomically with
+ * the queueing, so the queue stays in order, and the owner takes whichever
+ * of its next event and next broadcasts has the lowest number: messages are
+ * taken in the order they were sent, whatever their kind.
+ * <p>
+ * An owner either blocks in {@link #take()} on its own thread, or, when it
+ * is run as an actor by a {@link MicroServiceExecutor}, installs an
+ * activation that is run whenever a message arrives, and drains the mailbox
+ * with {@link #tryTake()}.
+ * <p>
+ * When the bus tracks {@link Quiescence}, the mailbox reports every message
+ * it delivers, and the previous message as handled whenever its owner asks
+ * for the next one.
+ * <p>
+ * Every delivery also carries the id its message type has in
+ * {@link MessageTypes}, resolved by the bus when the type got its topic or
+ * ring, and the mailbox keeps the id of the message taken last, so that its
+ * owner dispatches by indexing an array.
+ * <p>
+ * When the bus records {@link BusMetrics}, the mailbox stamps every delivery
+ * with the time it was sent and reports the queue depth and the latency of
+ * every message its owner takes, for the owner and for the message type.
+ */
+abstract class Mailbox {
+    private static final BroadcastRing.Cursor[] NO_CURSORS = new BroadcastRing.Cursor[0];
+
+    private volatile BroadcastRing.Cursor[] cursors = NO_CURSORS;
+    private volatile Runnable activation;
+    private final AtomicLong order;               // the bus-wide order numbers
+    private final Quiescence quiescence;          // null if the bus doesn't track quiescence
+    private final BusMetrics metrics;             // null if the bus doesn't record metrics
+    private final BusMetrics.Probe probe;         // the owner's statistics, null if not recorded
+    private final AtomicInteger queued = new AtomicInteger(); // counted only when tracked
+    private boolean holding;                      // owner only: a taken message is being handled
+    private int takenType = -1;                   // owner only: the type id of the message taken last
+    private volatile boolean closed;
+
+    Mailbox(AtomicLong order, Quiescence quiescence, BusMetrics metrics, String owner) {
+        this.order = order;
+        this.quiescence = quiescence;
+        this.metrics = metrics;
+        this.probe = metrics == null ? null : metrics.forService(owner);
+    }
+
+    /**
+     * Queues the event {@code m}, stamped with {@link #nextOrder()}, and wakes
+     * the owner if it is blocked in {@link #await()}. The stamp must be taken
+     * atomically with the queueing, so that the events are queued in the
+     * order of their stamps. This method never blocks (but may briefly lock).
+     * <p>
+     * @param m      the message to queue.
+     * @param type   the id of {@code m}'s type, to be returned by
+     *               {@link #type()} once it is taken.
+     * @param sentAt the {@link System#nanoTime()} {@code m} was sent at, to be
+     *               returned by {@link #sentAt()} once it is taken. Only
+     *               meaningful if the mailbox is {@link #measured()}.
+     */
+    abstract void enqueue(Message m, int type, long sentAt);
+
+    /**
+     * Takes the next queued event if there is one.
+     * May only be called by the owning micro-service.
+     * <p>
+     * @return the next event in the mailbox, or null if it is empty.
+     */
+    abstract Message poll();
+
+    /**
+     * @return the order number of the event {@link #poll()} would take, or -1
+     *         if no event is queued.
+     *         May only be called by the owning micro-service.
+     */
+    abstract long peekOrder();
+
+    /**
+     * Waits until an event is queued or a subscribed broadcast is published,
+     * without taking it.
+     * May only be called by the owning micro-service.
+     * <p>
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    abstract void await() throws InterruptedException;
+
+    /**
+     * @return the time the event last returned by {@link #poll()} or
+     *         {@link #await()} was sent at. Only meaningful if the mailbox is
+     *         {@link #measured()}.
+     */
+    abstract long sentAt();
+
+    /**
+     * @return the type id of the event last returned by {@link #poll()}.
+     */
+    abstract int type();
+
+    /**
+     * Wakes the owner if it is blocked in {@link #await()}.
+     */
+    abstract void wakeUp();
+
+    /**
+     * @return true if no event is queued.
+     */
+    abstract boolean isEmpty();
+
+    /**
+     * @return the next bus-wide order number, for {@link #enqueue} to stamp an
+     *         event with.
+     */
+    final long nextOrder() {
+        return order.getAndIncrement();
+    }
+
+    /**
+     * Adds the event {@code m} to the mailbox and notifies the owner, looking
+     * up the id of its type. This method never blocks.
+     * <p>
+     * @param m the message to deliver.
+     */
+    final void offer(Message m) {
+        offer(m, MessageTypes.idOf(m.getClass()));
+    }
+
+    /**
+     * Adds the event {@code m}, whose type has the id {@code type}, to the
+     * mailbox and notifies the owner. This method never blocks.
+     * <p>
+     * @param m    the message to deliver.
+     * @param type the id of {@code m}'s type in {@link MessageTypes}.
+     */
+    final void offer(Message m, int type) {
+        if (quiescence != null) {
+            quiescence.delivered(1);
+            queued.incrementAndGet();
+        }
+        long sentAt = 0;
+        if (probe != null) {
+            sentAt = System.nanoTime();
+            probe.delivered(1);
+            metrics.forType(m.getClass()).delivered(1);
+        }
+        enqueue(m, type, sentAt);
+        Runnable a = activation;
+        if (a != null) {
+            a.run();
+        }
+    }
+
+    /**
+     * Counts a broadcast published to a ring the owner reads, before it
+     * becomes visible.
+     */
+    final void broadcastDelivered() {
+        if (probe != null) {
+            probe.delivered(1);
+        }
+    }
+
+    /**
+     * @return true if the mailbox records {@link BusMetrics}.
+     */
+    final boolean measured() {
+        return probe != null;
+    }
+
+    /**
+     * Notifies the owner that a broadcast it subscribed to was published.
+     */
+    final void signal() {
+        Runnable a = activation;
+        if (a != null) {
+            a.run();
+        } else {
+            wakeUp();
+        }
+    }
+
+    /**
+     * Makes the mailbox run {@code a} on every delivery instead of waking a
+     * blocked owner.
+     */
+    final void activateWith(Runnable a) {
+        activation = a;
+    }
+
+    /**
+     * Takes the next message, waiting until one is available.
+     * Events and broadcasts are taken in the order they were sent.
+     * <p>
+     * @return the next message for the owner.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    final Message take() throws InterruptedException {
+        for (;;) {
+            Message m = tryTake();
+            if (m != null) {
+                return m;
+            }
+            await();
+        }
+    }
+
+    /**
+     * Takes the next message without waiting.
+     * <p>
+     * @return the next message for the owner, or null if there is none.
+     */
+    final Message tryTake() {
+        release();
+        long event = peekOrder();
+        BroadcastRing.Cursor broadcast = nextBroadcast();
+        if (broadcast != null && (event < 0 || broadcast.peekOrder() < event)) {
+            takenType = broadcast.ring().type();
+            return took(takeBroadcast(broadcast), false);
+        }
+        if (event < 0) {
+            return null;
+        }
+        Message m = poll();
+        takenType = type();
+        return took(m, true);
+    }
+
+    /**
+     * @return the type id of the message the owner took last, or -1 if it
+     *         took none yet. Must only be called by the owner.
+     */
+    final int takenType() {
+        return takenType;
+    }
+
+    /**
+     * Reports the message taken last as handled, if there is one.
+     */
+    final void release() {
+        if (holding) {
+            holding = false;
+            quiescence.handled(1);
+        }
+    }
+
+    /**
+     * @return the number of messages delivered to this mailbox and not yet
+     *         handled, including the one its owner is handling now.
+     *         Only meaningful when the bus tracks quiescence.
+     */
+    final long pending() {
+        long count = queued.get() + (holding ? 1 : 0);
+        for (BroadcastRing.Cursor c : cursors) {
+            count += c.unread();
+        }
+        return count;
+    }
+
+    /**
+     * Marks the mailbox as closed: the owner is gone, its current message is
+     * reported as handled and it is detached from every ring it reads.
+     * Events still queued must then be drained by the bus.
+     */
+    final void close() {
+        closed = true;
+        release();
+        closeCursors();
+    }
+
+    final boolean isClosed() {
+        return closed;
+    }
+
+    private Message took(Message m, boolean event) {
+        if (quiescence != null) {
+            if (event) {
+                queued.decrementAndGet();
+            }
+            holding = true;
+        }
+        if (probe != null && event) {
+            long latency = System.nanoTime() - sentAt();
+            probe.taken(latency);
+            metrics.forType(m.getClass()).taken(latency);
+        }
+        return m;
+    }
+
+    /**
+     * @return true if a message is waiting to be taken.
+     */
+    final boolean hasMessages() {
+        return !isEmpty() || broadcastPending();
+    }
+
+    /**
+     * @return true if some subscribed ring holds a broadcast the owner has
+     *         not taken yet.
+     */
+    final boolean broadcastPending() {
+        for (BroadcastRing.Cursor c : cursors) {
+            if (c.peekOrder() >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    final synchronized void addCursor(BroadcastRing.Cursor cursor) {
+        BroadcastRing.Cursor[] current = cursors;
+        BroadcastRing.Cursor[] updated = new BroadcastRing.Cursor[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = cursor;
+        cursors = updated;
+    }
+
+    private synchronized void closeCursors() {
+        for (BroadcastRing.Cursor c : cursors) {
+            long unread = c.ring().unsubscribe(c);
+            if (quiescence != null && unread > 0) {
+                quiescence.handled(unread);
+            }
+            if (probe != null && unread > 0) {
+                probe.dropped(unread);
+                c.ring().probe().dropped(unread);
+            }
+        }
+        cursors = NO_CURSORS;
+    }
+
+    /**
+     * @return the cursor whose next broadcast has the lowest order number, or
+     *         null if every broadcast was taken.
+     */
+    private BroadcastRing.Cursor nextBroadcast() {
+        BroadcastRing.Cursor best = null;
+        long bestOrder = Long.MAX_VALUE;
+        for (BroadcastRing.Cursor c : cursors) {
+            long next = c.peekOrder();
+            if (next >= 0 && next < bestOrder) {
+                best = c;
+                bestOrder = next;
+            }
+        }
+        return best;
+    }
+
+    private Broadcast takeBroadcast(BroadcastRing.Cursor cursor) {
+        if (probe != null) {
+            long latency = System.nanoTime() - cursor.sentAt();
+            probe.taken(latency);
+            cursor.ring().probe().taken(latency);
+        }
+        return cursor.take();
+    }
+}
@@ -1,63 +1,281 @@
 package bgu.spl.mics;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * The {@link MessageBusImpl class is the implementation of the MessageBus interface.
  * Write your implementation here!
  * Only one public method (in addition to getters which can be public solely for unit testing) may be added to this class
- * All other methods and members you add the class must be private.
+ * All other methods and members you add the class must be private, except for
+ * the package-private entry points below. They are not part of the
+ * {@link MessageBus} interface, and only the framework's own classes use them
+ * to reach a mailbox directly:
+ * <ul>
+ * <li>{@link #post(MicroService, Message)} hands a {@link Continuation} back
+ * to the event loop that registered it (see {@link Future#onComplete(Callback)}).</li>
+ * <li>{@link #pollMessage(MicroService)}, {@link #hasMessages(MicroService)} and
+ * {@link #activateWith(MicroService, Runnable)} let a {@link MicroServiceExecutor}
+ * run a service as an {@link Actor}, which takes its messages without blocking.</li>
+ * <li>{@link #awaitQuiescence(MicroService)} backs
+ * {@link MicroService#awaitQuiescence()}.</li>
+ * </ul>
+ * <p>
+ * Mailboxes are {@link BlockingMailbox}es by default. Running with
+ * {@code -Dbgu.spl.mics.mailbox=mpsc} switches every mailbox to the lock-free
+ * {@link MpscMailbox}, which scales much better when many services send to
+ * the same service (e.g. all the LiDAR workers sending to the fusion service).
+ * <p>
+ * The subscribers of every event type are held in a {@link Subscribers}
+ * snapshot that is found through a {@link ClassValue}, so sending an event
+ * neither locks nor allocates to pick its handler. A {@link RoutedEvent} is
+ * handed to the subscriber its key picks instead of the next one in turn.
+ * <p>
+ * Broadcasts are not copied into the subscribers' mailboxes. Each broadcast
+ * type has one shared {@link BroadcastRing}, which the subscribers read
+ * through their own cursors, so sending a broadcast is a single append no
+ * matter how many services subscribed to it. Events and broadcasts share
+ * one sequence of order numbers, by which every service takes them in the
+ * order they were sent.
+ * <p>
+ * Running with {@code -Dbgu.spl.mics.quiescence=true} makes the bus count the
+ * messages in flight, which lets a service wait until all the others are idle
+ * (see {@link MicroService#awaitQuiescence()}). The property must be set
+ * before the bus is first used.
+ * <p>
+ * Likewise {@code -Dbgu.spl.mics.metrics=true} makes the bus record the queue
+ * depth and latency of every message type and micro-service, see
+ * {@link BusMetrics}.
+ * <p>
+ * If a {@link BusRecorder} was installed before the bus is first used, every
+ * event and broadcast is handed to it, in the order they are delivered.
  */
 public class MessageBusImpl implements MessageBus {
-	private ConcurrentHashMap<MicroService, BlockingQueue<Message>> serviceQueues;
-	private ConcurrentHashMap<Class<? extends Message>, List<MicroService>> subscribers;
+	private static final String MAILBOX_PROPERTY = "bgu.spl.mics.mailbox";
+	private static final String QUIESCENCE_PROPERTY = "bgu.spl.mics.quiescence";
+
+	private static class MessageBusImplHolder {
+		private static final MessageBusImpl instance = new MessageBusImpl();
+	}
+
+	private final ConcurrentHashMap<MicroService, Mailbox> serviceQueues;
+	private final ConcurrentHashMap<Class<?>, Subscribers> subscribers;
+	private final ClassValue<Subscribers> topics;
+	private final ClassValue<BroadcastRing> channels;
+	private final AtomicLong order; // stamps events and broadcasts alike
+	private final ConcurrentHashMap<Event<?>, Future<?>> futures;
+	private final boolean lockFreeMailboxes;
+	private final Quiescence quiescence;
+	private final BusMetrics metrics;
+	private final BusRecorder recorder;
+
+	private MessageBusImpl() {
+		serviceQueues = new ConcurrentHashMap<>();
+		subscribers = new ConcurrentHashMap<>();
+		topics = new ClassValue<Subscribers>() {
+			@Override
+			protected Subscribers computeValue(Class<?> type) {
+				return subscribers.computeIfAbsent(type, k -> new Subscribers(MessageTypes.idOf(k)));
+			}
+		};
+		channels = new ClassValue<BroadcastRing>() {
+			@Override
+			protected BroadcastRing computeValue(Class<?> type) {
+				return new BroadcastRing(MessageTypes.idOf(type), order, quiescence,
+						metrics == null ? null : metrics.forType(type));
+			}
+		};
+		order = new AtomicLong();
+		futures = new ConcurrentHashMap<>();
+		lockFreeMailboxes = "mpsc".equalsIgnoreCase(System.getProperty(MAILBOX_PROPERTY));
+		quiescence = Boolean.getBoolean(QUIESCENCE_PROPERTY) ? new Quiescence() : null;
+		metrics = BusMetrics.getInstance();
+		recorder = BusRecorder.getInstance();
+	}
+
+	/**
+	 * @return the singleton instance of the message-bus.
+	 */
+	public static MessageBusImpl getInstance() {
+		return MessageBusImplHolder.instance;
+	}
+
 	@Override
 	public <T> void subscribeEvent(Class<? extends Event<T>> type, MicroService m) {
-		// TODO Auto-generated method stub
-
+		topics.get(type).add(mailboxOf(m));
 	}
 
 	@Override
 	public void subscribeBroadcast(Class<? extends Broadcast> type, MicroService m) {
-		// TODO Auto-generated method stub
-
+		Mailbox mailbox = mailboxOf(m);
+		BroadcastRing.Cursor cursor = channels.get(type).subscribe(mailbox);
+		if (cursor != null) {
+			mailbox.addCursor(cursor);
+		}
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public <T> void complete(Event<T> e, T result) {
-		// TODO Auto-generated method stub
-
+		Future<T> future = (Future<T>) futures.remove(e);
+		if (future != null) {
+			future.resolve(result);
+		}
 	}
 
 	@Override
 	public void sendBroadcast(Broadcast b) {
-		// TODO Auto-generated method stub
-
+		if (recorder != null) {
+			synchronized (recorder) {
+				recorder.record(b, sourceName());
+				channels.get(b.getClass()).publish(b);
+			}
+			return;
+		}
+		channels.get(b.getClass()).publish(b);
 	}
 
-	
+
 	@Override
 	public <T> Future<T> sendEvent(Event<T> e) {
-		// TODO Auto-generated method stub
-		return null;
+		Subscribers topic = topics.get(e.getClass());
+		Mailbox mailbox = e instanceof RoutedEvent
+				? topic.route(((RoutedEvent<T>) e).getRoutingKey())
+				: topic.next();
+		if (mailbox == null) {
+			return null;
+		}
+		Future<T> future = new Future<>();
+		futures.put(e, future);
+		if (recorder != null) {
+			synchronized (recorder) {
+				recorder.record(e, sourceName());
+				mailbox.offer(e, topic.type());
+			}
+		} else {
+			mailbox.offer(e, topic.type());
+		}
+		if (mailbox.isClosed()) { // the handler unregistered meanwhile
+			drain(mailbox);
+		}
+		return future;
 	}
 
 	@Override
 	public void register(MicroService m) {
-		// TODO Auto-generated method stub
-
+		serviceQueues.computeIfAbsent(m, k -> lockFreeMailboxes
+				? new MpscMailbox(order, quiescence, metrics, m.getName())
+				: new BlockingMailbox(order, quiescence, metrics, m.getName()));
 	}
 
 	@Override
 	public void unregister(MicroService m) {
-		// TODO Auto-generated method stub
-
+		Mailbox mailbox = serviceQueues.remove(m);
+		if (mailbox == null) {
+			return;
+		}
+		for (Subscribers topic : subscribers.values()) {
+			topic.remove(mailbox);
+		}
+		mailbox.close();
+		drain(mailbox);
 	}
 
 	@Override
 	public Message awaitMessage(MicroService m) throws InterruptedException {
-		// TODO Auto-generated method stub
-		return null;
+		return mailboxOf(m).take();
 	}
 
-	
+	/**
+	 * Delivers {@code message} straight to {@code m}'s mailbox, without going
+	 * through any subscription. Used to hand {@link Continuation}s back to the
+	 * event loop that registered them. Nothing happens if {@code m} is not
+	 * registered (anymore).
+	 */
+	void post(MicroService m, Message message) {
+		Mailbox mailbox = serviceQueues.get(m);
+		if (mailbox != null) {
+			mailbox.offer(message);
+			if (mailbox.isClosed()) {
+				drain(mailbox);
+			}
+		}
+	}
+
+	/**
+	 * Waits until every micro-service other than {@code m} has handled all the
+	 * messages delivered to it so far.
+	 *
+	 * @throws IllegalStateException if the bus does not track quiescence.
+	 */
+	void awaitQuiescence(MicroService m) throws InterruptedException {
+		if (quiescence == null) {
+			throw new IllegalStateException("Quiescence is not tracked, run with -D" + QUIESCENCE_PROPERTY + "=true");
+		}
+		quiescence.await(mailboxOf(m));
+	}
+
+	/**
+	 * Takes the next message of a <b>registered</b> micro-service without
+	 * waiting. Used by actors that are scheduled only when they have messages.
+	 *
+	 * @return the next message in {@code m}'s queue, or null if there is none.
+	 */
+	Message pollMessage(MicroService m) {
+		return mailboxOf(m).tryTake();
+	}
+
+	/**
+	 * @return true if {@code m} is registered and has a message waiting.
+	 */
+	boolean hasMessages(MicroService m) {
+		Mailbox mailbox = serviceQueues.get(m);
+		return mailbox != null && mailbox.hasMessages();
+	}
+
+	/**
+	 * Makes every delivery to {@code m} run {@code activation} instead of
+	 * waking a thread blocked in {@link #awaitMessage(MicroService)}.
+	 */
+	void activateWith(MicroService m, Runnable activation) {
+		mailboxOf(m).activateWith(activation);
+	}
+
+	/**
+	 * Empties a closed mailbox. Events that will never be handled are resolved
+	 * with null so no one waits on them forever.
+	 */
+	@SuppressWarnings("unchecked")
+	private void drain(Mailbox mailbox) {
+		synchronized (mailbox) {
+			Message left;
+			while ((left = mailbox.tryTake()) != null) {
+				if (left instanceof Event) {
+					complete((Event<Object>) left, null);
+				}
+			}
+			mailbox.release();
+		}
+	}
+
+	/**
+	 * @return the name of the micro-service sending from the current thread, or null.
+	 */
+	private static String sourceName() {
+		MicroService current = EventLoop.current();
+		return current == null ? null : current.getName();
+	}
+
+	/**
+	 * @return the mailbox of the <b>registered</b> micro-service {@code m}.
+	 * @throws IllegalStateException if {@code m} is not registered.
+	 */
+	Mailbox mailboxOf(MicroService m) {
+		Mailbox mailbox = serviceQueues.get(m);
+		if (mailbox == null) {
+			throw new IllegalStateException("MicroService " + m.getName() + " is not registered");
+		}
+		return mailbox;
+	}
 
 }
@@ -0,0 +1,38 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns every {@link Message} class a small integer id, the first time the
+ * class is subscribed to or sent.
+ * <p>
+ * Ids are dense (0, 1, 2, ...), so a micro-service can keep its callbacks in
+ * an array indexed by message type. Looking an id up goes through a
+ * {@link ClassValue}, which caches it per class: the first lookup of a class
+ * computes the id and allocates its cache entry, and every later one is a
+ * single cached lookup that allocates nothing.
+ * <p>
+ * Ids are looked up when subscribing, and by the bus once per type, when the
+ * type gets its {@link Subscribers} or {@link BroadcastRing}. The bus then
+ * delivers every message with its type's id, so dispatching a message taken
+ * from a {@link Mailbox} looks nothing up.
+ */
+final class MessageTypes {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private static final ClassValue<Integer> IDS = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return NEXT_ID.getAndIncrement(); // a lost race only leaves a gap
+        }
+    };
+
+    private MessageTypes() {
+    }
+
+    /**
+     * @return the id of the message class {@code type}.
+     */
+    static int idOf(Class<?> type) {
+        return IDS.get(type);
+    }
+}
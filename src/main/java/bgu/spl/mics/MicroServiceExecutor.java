@@ -0,0 +1,166 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Starts {@link MicroService}s and waits for them to terminate.
+ * <p>
+ * How the event loops are run is chosen by the {@link Mode}:
+ * <ul>
+ * <li>{@link Mode#THREAD} (the default) runs every service on a dedicated
+ * platform thread, blocking in {@link MessageBus#awaitMessage(MicroService)}.</li>
+ * <li>{@link Mode#VIRTUAL} runs the same blocking loop on a virtual thread per
+ * service, where the runtime supports them (Java 21+). Otherwise it falls back
+ * to {@link Mode#POOL}.</li>
+ * <li>{@link Mode#POOL} runs every service as an actor on a shared
+ * work-stealing pool with one worker per core. A service only occupies a
+ * worker while its mailbox has messages.</li>
+ * </ul>
+ * In the pooled mode a callback that blocks (sleeps, waits on a
+ * {@link Future}) holds a pool worker while it does, so services that block
+ * between messages should be started with {@link #startDedicated(MicroService)}.
+ */
+public class MicroServiceExecutor {
+
+    /**
+     * How micro-service event loops are scheduled.
+     */
+    public enum Mode {
+        THREAD, VIRTUAL, POOL;
+
+        /**
+         * @param name a mode name, in any case, or null.
+         * @return the matching mode, or {@link #THREAD} if {@code name} is null.
+         */
+        public static Mode of(String name) {
+            return name == null ? THREAD : valueOf(name.trim().toUpperCase());
+        }
+    }
+
+    private final Mode mode;
+    private final Executor executor;
+    private int running = 0;      // guarded by this
+    private int initializing = 0; // guarded by this
+
+    /**
+     * @param mode how to run the event loops of the services started by this executor.
+     */
+    public MicroServiceExecutor(Mode mode) {
+        Executor virtualThreads = mode == Mode.VIRTUAL ? virtualThreadExecutor() : null;
+        if (virtualThreads != null) {
+            this.mode = Mode.VIRTUAL;
+            this.executor = virtualThreads;
+        } else if (mode == Mode.THREAD) {
+            this.mode = Mode.THREAD;
+            this.executor = null;
+        } else {
+            this.mode = Mode.POOL;
+            this.executor = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+    }
+
+    /**
+     * @return the mode actually in use, after any fallback.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Starts the event loop of {@code m} according to the executor's mode.
+     */
+    public void start(MicroService m) {
+        started(m);
+        switch (mode) {
+            case POOL:
+                new Actor(m, executor, this::finished).start();
+                break;
+            case VIRTUAL:
+                executor.execute(loop(m));
+                break;
+            default:
+                new Thread(loop(m), m.getName()).start();
+        }
+    }
+
+    /**
+     * Starts the event loop of {@code m} on a platform thread of its own,
+     * whatever the executor's mode.
+     */
+    public void startDedicated(MicroService m) {
+        started(m);
+        new Thread(loop(m), m.getName()).start();
+    }
+
+    /**
+     * Waits until every service started by this executor so far has
+     * returned from its {@code initialize()} method, i.e. has made its
+     * subscriptions.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void awaitInitialized() throws InterruptedException {
+        while (initializing > 0) {
+            wait();
+        }
+    }
+
+    /**
+     * Waits until every service started by this executor has terminated.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void awaitTermination() throws InterruptedException {
+        while (running > 0) {
+            wait();
+        }
+    }
+
+    /**
+     * Releases the executor's worker threads, if it has any. Services that
+     * are still running in the pooled modes stop being scheduled.
+     */
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    private Runnable loop(MicroService m) {
+        return () -> {
+            try {
+                m.run();
+            } finally {
+                finished();
+            }
+        };
+    }
+
+    private synchronized void started(MicroService m) {
+        running++;
+        initializing++;
+        m.whenInitialized(this::initialized);
+    }
+
+    private synchronized void initialized() {
+        initializing--;
+        notifyAll();
+    }
+
+    private synchronized void finished() {
+        running--;
+        notifyAll();
+    }
+
+    private static Executor virtualThreadExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null; // virtual threads are not available on this runtime
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free {@link Mailbox} for many producers and a single consumer.
+ * <p>
+ * Producers link a new node by compare-and-set of the head pointer and never
+ * contend on a lock; the owning micro-service is the only thread that moves
+ * the tail, so taking a message is plain reads and writes. A node's order
+ * number is taken after the head it replaces was read, and so after that
+ * node's own: the queue stays in order. A node is visible to the owner only
+ * once its producer linked it, so the owner waits for a swapped but unlinked
+ * node before comparing the queue's next order with the broadcasts': the
+ * node may have been stamped before a broadcast already published.
+ * When the mailbox is empty the owner parks itself with {@link LockSupport}
+ * and the next producer, or publisher of a subscribed broadcast, unparks it.
+ */
+class MpscMailbox extends Mailbox {
+
+    private static final class Node {
+        private volatile Node next;
+        private Message value;
+        private long order;
+        private final int type;
+        private final long sentAt;
+
+        private Node(Message value, int type, long sentAt) {
+            this.value = value;
+            this.type = type;
+            this.sentAt = sentAt;
+        }
+    }
+
+    private static final AtomicReferenceFieldUpdater<MpscMailbox, Node> HEAD =
+            AtomicReferenceFieldUpdater.newUpdater(MpscMailbox.class, Node.class, "head");
+
+    private volatile Node head; // last linked node, swapped by producers
+    private Node tail;          // consumed stub, touched only by the owner
+    private long sentAt;        // of the message taken last, touched only by the owner
+    private int type;           // of the message taken last, touched only by the owner
+    private volatile Thread waiter;
+
+    MpscMailbox(AtomicLong order, Quiescence quiescence, BusMetrics metrics, String owner) {
+        super(order, quiescence, metrics, owner);
+        Node stub = new Node(null, -1, 0);
+        head = stub;
+        tail = stub;
+    }
+
+    @Override
+    void enqueue(Message m, int type, long sentAt) {
+        Node node = new Node(m, type, sentAt);
+        Node prev;
+        do {
+            prev = head;
+            node.order = nextOrder();
+        } while (!HEAD.compareAndSet(this, prev, node));
+        prev.next = node;
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    @Override
+    long peekOrder() {
+        Node next = tail.next;
+        while (next == null && head != tail) {
+            // a producer swapped the head but hasn't linked its node yet
+            Thread.yield();
+            next = tail.next;
+        }
+        return next == null ? -1 : next.order;
+    }
+
+    @Override
+    Message poll() {
+        Node next = tail.next;
+        if (next == null) {
+            return null;
+        }
+        Message m = next.value;
+        next.value = null; // the node becomes the new stub, don't keep the message alive
+        tail = next;
+        sentAt = next.sentAt;
+        type = next.type;
+        return m;
+    }
+
+    @Override
+    void await() throws InterruptedException {
+        waiter = Thread.currentThread();
+        try {
+            for (;;) {
+                if (tail.next != null || broadcastPending()) {
+                    return;
+                }
+                if (head != tail) {
+                    // a producer swapped the head but hasn't linked its node yet
+                    Thread.yield();
+                    continue;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    @Override
+    long sentAt() {
+        return sentAt;
+    }
+
+    @Override
+    int type() {
+        return type;
+    }
+
+    @Override
+    boolean isEmpty() {
+        return head == tail; // also false while a producer is linking its node
+    }
+
+    @Override
+    void wakeUp() {
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+}
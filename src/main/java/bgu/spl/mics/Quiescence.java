@@ -0,0 +1,59 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Counts the messages that were delivered by the {@link MessageBusImpl} but
+ * not yet handled, so a micro-service can wait until all the others are idle.
+ * <p>
+ * A delivery is counted before the message becomes visible to its receiver,
+ * and a message counts as handled when its receiver asks for the next one (or
+ * unregisters). A handler that sends further messages therefore keeps the
+ * count above zero until those are handled too.
+ */
+final class Quiescence {
+    private final AtomicLong inFlight = new AtomicLong();
+    private volatile Thread waiter;
+
+    void delivered(long count) {
+        inFlight.addAndGet(count);
+    }
+
+    void handled(long count) {
+        inFlight.addAndGet(-count);
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    /**
+     * Waits until every message in flight is one of {@code own}'s: queued for
+     * it, unread in one of its rings, or the one it is handling right now.
+     * Must be called by the owner of {@code own}; only one owner may wait at
+     * a time.
+     */
+    void await(Mailbox own) throws InterruptedException {
+        waiter = Thread.currentThread();
+        try {
+            for (;;) {
+                // own deliveries are counted in flight before they are counted as
+                // pending, so reading pending around the total can only overestimate
+                // the others' messages, never report a false zero
+                long before = own.pending();
+                long total = inFlight.get();
+                long after = own.pending();
+                if (before == after && total - after <= 0) {
+                    return;
+                }
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+}
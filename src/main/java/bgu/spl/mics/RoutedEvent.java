@@ -0,0 +1,18 @@
+package bgu.spl.mics;
+
+/**
+ * An {@link Event} that is routed by a key instead of in a Round-Robin fashion.
+ * <p>
+ * Every event with the same key is received by the same subscriber, as long
+ * as the event type's subscribers do not change. This lets several
+ * micro-services split work that must stay on one service per key, e.g. the
+ * updates of one landmark, without any of them locking.
+ */
+public interface RoutedEvent<T> extends Event<T> {
+
+    /**
+     * @return the key that picks this event's subscriber. Any int, negative
+     *         ones included.
+     */
+    int getRoutingKey();
+}
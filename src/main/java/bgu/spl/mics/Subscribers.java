@@ -0,0 +1,86 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The mailboxes subscribed to a single message type.
+ * <p>
+ * The subscribers are kept in an immutable array that is replaced
+ * (copy-on-write) whenever a micro-service subscribes or unregisters, which
+ * is rare. Sending only reads the current array, and picking the next event
+ * handler in round-robin order is a single atomic increment of the cursor.
+ * A {@link RoutedEvent}'s handler is picked by its key alone, so each key
+ * keeps going to the same subscriber while the array does not change.
+ */
+final class Subscribers {
+    private static final Mailbox[] EMPTY = new Mailbox[0];
+
+    private volatile Mailbox[] members = EMPTY;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final int type;
+
+    /**
+     * @param type the id of the subscribed message type in {@link MessageTypes}.
+     */
+    Subscribers(int type) {
+        this.type = type;
+    }
+
+    /**
+     * @return the id of the subscribed message type, which the events sent to
+     *         the subscribers are delivered with.
+     */
+    int type() {
+        return type;
+    }
+
+    /**
+     * @return the next subscriber in round-robin order, or null if there are none.
+     */
+    Mailbox next() {
+        Mailbox[] current = members;
+        if (current.length == 0) {
+            return null;
+        }
+        int i = cursor.getAndIncrement() & Integer.MAX_VALUE;
+        return current[i % current.length];
+    }
+
+    /**
+     * @return the subscriber for events with routing key {@code key}, or null
+     *         if there are none.
+     */
+    Mailbox route(int key) {
+        Mailbox[] current = members;
+        if (current.length == 0) {
+            return null;
+        }
+        return current[Math.floorMod(key, current.length)];
+    }
+
+    synchronized void add(Mailbox mailbox) {
+        Mailbox[] current = members;
+        for (Mailbox m : current) {
+            if (m == mailbox) {
+                return;
+            }
+        }
+        Mailbox[] updated = new Mailbox[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = mailbox;
+        members = updated;
+    }
+
+    synchronized void remove(Mailbox mailbox) {
+        Mailbox[] current = members;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == mailbox) {
+                Mailbox[] updated = new Mailbox[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                members = updated;
+                return;
+            }
+        }
+    }
+}
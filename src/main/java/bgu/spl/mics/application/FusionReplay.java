@@ -0,0 +1,126 @@
+package bgu.spl.mics.application;
+
+import bgu.spl.mics.Future;
+import bgu.spl.mics.Message;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroServiceExecutor;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.MessageLog;
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TrackedObjectsEvent;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.services.FusionShardService;
+import bgu.spl.mics.application.services.FusionSlamService;
+import bgu.spl.mics.application.services.TimeService;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replays a run recorded with {@code "RecordBus"} (see {@link GurionRockRunner})
+ * into a FusionSlamService alone, as fast as it can handle the messages.
+ * <p>
+ * The recorded tracked-object and pose events are sent to the fusion service
+ * in the order they were delivered during the run, without ticks or sensors.
+ * A recorded crash is replayed once every event before it was handled, and
+ * ends the replay as it ended the run. Otherwise the fusion service is
+ * stopped once it handled the last event. The resulting map can be written
+ * out to be compared with the run's output. The map may be split into shards,
+ * as with {@code "FusionShards"}, to measure how fusion scales.
+ */
+public class FusionReplay {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * @param args the message log to replay and, optionally, a file to write
+     *             the resulting landmarks to and the number of shards.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: FusionReplay <message log> [output file] [shards]");
+            return;
+        }
+        MessageBusImpl bus = MessageBusImpl.getInstance();
+        FusionSlam fusionSlam = FusionSlam.getInstance();
+        MicroServiceExecutor executor = new MicroServiceExecutor(MicroServiceExecutor.Mode.THREAD);
+        try (MessageLog.Reader log = new MessageLog.Reader(Paths.get(args[0]))) {
+            fusionSlam.setShards(args.length > 2 ? Integer.parseInt(args[2]) : 1);
+            executor.start(new FusionSlamService(fusionSlam));
+            for (int i = 0; i < fusionSlam.getShards().size(); i++) {
+                executor.start(new FusionShardService(i + 1));
+            }
+            executor.awaitInitialized();
+
+            long start = System.nanoTime();
+            long entries = 0;
+            long replayed = 0;
+            Future<Boolean> last = null;
+            boolean crashed = false;
+            MessageLog.Entry entry;
+            while (!crashed && (entry = log.next()) != null) {
+                entries++;
+                Message message = entry.getMessage();
+                if (message instanceof TrackedObjectsEvent) {
+                    last = bus.sendEvent((TrackedObjectsEvent) message);
+                    replayed++;
+                } else if (message instanceof PoseEvent) {
+                    last = bus.sendEvent((PoseEvent) message);
+                    replayed++;
+                } else if (message instanceof CrashedBroadcast) {
+                    awaitHandled(last);
+                    bus.sendBroadcast((CrashedBroadcast) message);
+                    crashed = true;
+                }
+            }
+            if (!crashed) {
+                awaitHandled(last);
+                bus.sendBroadcast(new TerminatedBroadcast("FusionReplay", TimeService.class));
+            }
+            executor.awaitTermination();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Replayed %d of %d messages in %.1f ms (%.0f messages/s), %d landmarks%n",
+                    replayed, entries, elapsed / 1e6, replayed / (elapsed / 1e9), fusionSlam.getLandmarks().size());
+            if (args.length > 1) {
+                writeOutput(args[1], fusionSlam);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to replay: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitHandled(Future<Boolean> event) {
+        if (event != null) {
+            event.get();
+        }
+    }
+
+    private static void writeOutput(String file, FusionSlam fusionSlam) throws IOException {
+        Map<String, Object> output = new LinkedHashMap<>();
+        if (fusionSlam.isCrashed()) {
+            output.put("error", fusionSlam.getError());
+            output.put("faultySensor", fusionSlam.getFaultySensor());
+        }
+        output.put("numLandmarks", fusionSlam.getLandmarks().size());
+        Map<String, LandMark> landMarks = new LinkedHashMap<>();
+        for (LandMark landMark : fusionSlam.getLandmarks()) {
+            landMarks.put(landMark.getId(), landMark);
+        }
+        output.put("landMarks", landMarks);
+        try (Writer writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            GSON.toJson(output, writer);
+        }
+    }
+}
@@ -1,13 +1,108 @@
 package bgu.spl.mics.application;
 
+import bgu.spl.mics.BusMetrics;
+import bgu.spl.mics.BusRecorder;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroServiceExecutor;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.MessageLog;
+import bgu.spl.mics.application.objects.Camera;
+import bgu.spl.mics.application.objects.CameraDataIndex;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.GPSIMU;
+import bgu.spl.mics.application.objects.LandMark;
+import bgu.spl.mics.application.objects.LiDarDataBase;
+import bgu.spl.mics.application.objects.LiDarWorkerTracker;
+import bgu.spl.mics.application.objects.OccupancyGrid;
+import bgu.spl.mics.application.objects.PendingObjects;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObjectsCoalescer;
+import bgu.spl.mics.application.objects.VoxelGrid;
+import bgu.spl.mics.application.services.CameraService;
+import bgu.spl.mics.application.services.FusionShardService;
+import bgu.spl.mics.application.services.FusionSlamService;
+import bgu.spl.mics.application.services.LiDarService;
+import bgu.spl.mics.application.services.PoseService;
+import bgu.spl.mics.application.services.TimeService;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * The main entry point for the GurionRock Pro Max Ultra Over 9000 simulation.
  * <p>
  * This class initializes the system and starts the simulation by setting up
  * services, objects, and configurations.
  * </p>
+ * Besides the documented keys, the configuration file may set
+ * {@code "FastForward": true} to run the simulation as fast as it can compute
+ * instead of one tick per {@code TickTime}, and {@code "ExecutionMode"} to one of
+ * {@code thread}, {@code virtual} or {@code pool} (see {@link MicroServiceExecutor}).
+ * Both may also be given as the system properties {@code bgu.spl.mics.fastForward}
+ * and {@code bgu.spl.mics.executor}. Setting {@code "Metrics": true} (or
+ * {@code -Dbgu.spl.mics.metrics=true}) adds the message-bus latency and queue
+ * statistics (see {@link BusMetrics}) to the output, under {@code "messageBus"}.
+ * Setting {@code "TrackedObjectsBatch"} makes the LiDAR workers send their
+ * objects to FusionSLAM in one batch per tick; a positive value also sends a
+ * batch as soon as it holds that many objects (see {@link TrackedObjectsCoalescer}).
+ * Setting {@code "InterpolatePoses": true} gives the ticks between two recorded
+ * poses an interpolated pose (see {@link GPSIMU}), so objects tracked at those
+ * ticks are mapped instead of waiting for a pose that never comes.
+ * The LiDAR {@code lidars_data_path} may name either a JSON recording or a
+ * binary one made by {@link LiDarDataConverter}; the file's first bytes tell which.
+ * Setting {@code "RecordBus"} to a file name (or {@code -Dbgu.spl.mics.record})
+ * records every message sent during the run to that file (see {@link MessageLog}),
+ * which {@link FusionReplay} can replay into the fusion service alone.
+ * Setting {@code "FusionShards"} to more than one splits the map into that many
+ * shards by landmark id, updated by as many {@link FusionShardService}s
+ * (see {@link FusionSlam#setShards(int)}); the output merges them.
+ * Tracked objects that reach fusion before their pose wait for it in a
+ * bounded buffer (see {@link PendingObjects}); {@code "MaxPendingObjects"}
+ * sets its size; when it is set, or metrics are on, the output reports the
+ * buffer's counts under {@code "pendingObjects"}.
+ * A LiDAR configuration may set {@code "voxel_leaf_size"} to thin out the
+ * points of each object it tracks (see {@link VoxelGrid}); the output then
+ * reports each LiDAR's recorded and reported points under {@code "downsampling"},
+ * with an estimate of the fusion time the dropped points would have cost:
+ * their number times fusion's measured mean time per point.
+ * Setting {@code "OccupancyCellSize"} (in meters) makes FusionSLAM keep an
+ * {@link OccupancyGrid} of that resolution, which is written next to the
+ * output, to {@code occupancy_grid.bin}, and summed up under {@code "occupancyGrid"}.
+ * <p>
+ * The input files are loaded in parallel, and each sensor's service starts as
+ * soon as its own data is ready. The first tick is sent only once every file
+ * is loaded and every service has subscribed. With metrics on, the output
+ * reports, under {@code "startup"}, when each file was ready and when the
+ * first tick was sent.
  */
 public class GurionRockRunner {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
     /**
      * The main method of the simulation.
@@ -17,10 +112,348 @@ public class GurionRockRunner {
      * @param args Command-line arguments. The first argument is expected to be the path to the configuration file.
      */
     public static void main(String[] args) {
-        System.out.println("Hello World!");
+        if (args.length < 1) {
+            System.err.println("Usage: GurionRockRunner <configuration file>");
+            return;
+        }
+        long start = System.nanoTime();
+        Path configFile = Paths.get(args[0]).toAbsolutePath();
+        Path baseDir = configFile.getParent();
+        ExecutorService loaders = null;
+        MessageLog.Recorder recorder = null;
+        try {
+            JsonObject config = readJson(configFile).getAsJsonObject();
+            Map<String, Long> readyAt = new ConcurrentHashMap<>();
+            readyAt.put("configuration", System.nanoTime());
+            boolean fastForward = config.has("FastForward")
+                    ? config.get("FastForward").getAsBoolean()
+                    : Boolean.getBoolean("bgu.spl.mics.fastForward");
+            if (fastForward) {
+                // must be set before the message-bus is first used
+                System.setProperty("bgu.spl.mics.quiescence", "true");
+            }
+            if (config.has("Metrics") && config.get("Metrics").getAsBoolean()) {
+                System.setProperty("bgu.spl.mics.metrics", "true");
+            }
+            String recordTo = config.has("RecordBus")
+                    ? config.get("RecordBus").getAsString()
+                    : System.getProperty("bgu.spl.mics.record");
+            if (recordTo != null) {
+                // must be installed before the message-bus is first used
+                recorder = new MessageLog.Recorder(baseDir.resolve(recordTo));
+                BusRecorder.install(recorder);
+            }
+            MicroServiceExecutor.Mode mode = MicroServiceExecutor.Mode.of(config.has("ExecutionMode")
+                    ? config.get("ExecutionMode").getAsString()
+                    : System.getProperty("bgu.spl.mics.executor"));
+
+            JsonObject cameraSection = config.getAsJsonObject("Cameras");
+            JsonObject lidarSection = lidarSection(config);
+            Path cameraData = baseDir.resolve(cameraSection.get("camera_datas_path").getAsString());
+            Path lidarData = baseDir.resolve(lidarSection.get("lidars_data_path").getAsString());
+            Path poseData = baseDir.resolve(config.get("poseJsonFile").getAsString());
+            JsonArray cameraConfigs = cameraSection.getAsJsonArray("CamerasConfigurations");
+            JsonArray lidarConfigs = lidarSection.getAsJsonArray("LidarConfigurations");
+
+            FusionSlam fusionSlam = FusionSlam.getInstance();
+            fusionSlam.setActiveSensors(cameraConfigs.size() + lidarConfigs.size() + 1);
+            fusionSlam.setShards(config.has("FusionShards") ? config.get("FusionShards").getAsInt() : 1);
+            if (config.has("OccupancyCellSize")) {
+                fusionSlam.setOccupancyCellSize(config.get("OccupancyCellSize").getAsDouble());
+            }
+            if (config.has("MaxPendingObjects")) {
+                fusionSlam.setPendingLimit(config.get("MaxPendingObjects").getAsInt());
+            }
+            boolean reportPending = config.has("MaxPendingObjects") || BusMetrics.getInstance() != null;
+            boolean interpolatePoses = config.has("InterpolatePoses") && config.get("InterpolatePoses").getAsBoolean();
+            TrackedObjectsCoalescer coalescer = config.has("TrackedObjectsBatch")
+                    ? new TrackedObjectsCoalescer(config.get("TrackedObjectsBatch").getAsInt())
+                    : null;
+
+            // Every input file is loaded in parallel, and each sensor's service
+            // starts as soon as its own data is ready. No sensor sends anything
+            // before the first tick, so the order the services start in does not matter.
+            MicroServiceExecutor executor = new MicroServiceExecutor(mode);
+            executor.start(new FusionSlamService(fusionSlam));
+            for (int i = 0; i < fusionSlam.getShards().size(); i++) {
+                executor.start(new FusionShardService(i + 1));
+            }
+            loaders = Executors.newFixedThreadPool(
+                    Math.max(1, Math.min(cameraConfigs.size() + 2, Runtime.getRuntime().availableProcessors())));
+            List<CompletableFuture<?>> loads = new ArrayList<>();
+            CompletableFuture<GPSIMU> gpsimu = load(() -> new GPSIMU(loadPoses(poseData), interpolatePoses), loaders)
+                    .thenApply(loaded -> {
+                        readyAt.put("poses", System.nanoTime());
+                        executor.start(new PoseService(loaded));
+                        return loaded;
+                    });
+            loads.add(gpsimu);
+            CompletableFuture<List<LiDarWorkerTracker>> lidars = load(() -> loadLidars(lidarConfigs, lidarData), loaders)
+                    .thenApply(loaded -> {
+                        readyAt.put("lidarData", System.nanoTime());
+                        for (LiDarWorkerTracker lidar : loaded) {
+                            executor.start(new LiDarService(lidar, coalescer));
+                        }
+                        return loaded;
+                    });
+            loads.add(lidars);
+            // one pass finds every camera's frames, then each camera opens the file at its own
+            CompletableFuture<CameraDataIndex> cameraIndex = load(() -> CameraDataIndex.of(cameraData), loaders);
+            List<CompletableFuture<Camera>> cameras = new ArrayList<>();
+            for (JsonElement element : cameraConfigs) {
+                JsonObject c = element.getAsJsonObject();
+                CompletableFuture<Camera> camera = loadAfter(cameraIndex, index -> new Camera(c.get("id").getAsInt(),
+                        c.get("frequency").getAsInt(), c.get("camera_key").getAsString(), index), loaders)
+                        .thenApply(loaded -> {
+                            readyAt.merge("cameraData", System.nanoTime(), Math::max);
+                            executor.start(new CameraService(loaded));
+                            return loaded;
+                        });
+                cameras.add(camera);
+                loads.add(camera);
+            }
+
+            // The readiness barrier: every file is loaded and every service has subscribed.
+            Throwable failure = null;
+            try {
+                CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                failure = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            }
+            loaders.shutdown();
+            executor.awaitInitialized();
+            if (failure != null) {
+                abort(executor, failure);
+                return;
+            }
+            executor.startDedicated(new TimeService(config.get("TickTime").getAsInt(),
+                    config.get("Duration").getAsInt(), fastForward));
+            executor.awaitTermination();
+            executor.shutdown();
+
+            List<Camera> loadedCameras = new ArrayList<>();
+            for (CompletableFuture<Camera> camera : cameras) {
+                loadedCameras.add(camera.join());
+            }
+            writeOutput(baseDir.resolve("output_file.json"), fusionSlam, loadedCameras, lidars.join(),
+                    gpsimu.join(), reportPending,
+                    BusMetrics.getInstance() != null ? startup(start, readyAt) : null);
+        } catch (IOException e) {
+            System.err.println("Failed to run the simulation: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (loaders != null) {
+                loaders.shutdownNow();
+            }
+            if (recorder != null) {
+                try {
+                    recorder.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to record the message-bus: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Something that loads an input file.
+     */
+    private interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private static <T> CompletableFuture<T> load(Loader<T> loader, Executor loaders) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return loader.load();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, loaders);
+    }
+
+    private interface Step<A, T> {
+        T load(A input) throws IOException;
+    }
+
+    /**
+     * Loads with {@code step} once {@code input} is loaded.
+     */
+    private static <A, T> CompletableFuture<T> loadAfter(CompletableFuture<A> input, Step<A, T> step, Executor loaders) {
+        return input.thenApplyAsync(loaded -> {
+            try {
+                return step.load(loaded);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, loaders);
+    }
+
+    /**
+     * Stops the services that were started before an input file failed to
+     * load, and reports the failure.
+     */
+    private static void abort(MicroServiceExecutor executor, Throwable failure) throws InterruptedException {
+        MessageBusImpl.getInstance().sendBroadcast(new CrashedBroadcast("GurionRockRunner", failure.getMessage()));
+        executor.awaitTermination();
+        executor.shutdown();
+        if (failure instanceof IOException) {
+            System.err.println("Failed to run the simulation: " + failure.getMessage());
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else {
+            throw (Error) failure;
+        }
+    }
+
+    private static JsonElement readJson(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader);
+        }
+    }
+
+    /**
+     * The LiDAR section is called "LidarWorkers" in some configuration files and "Lidars" in others.
+     */
+    private static JsonObject lidarSection(JsonObject config) {
+        return config.has("LidarWorkers") ? config.getAsJsonObject("LidarWorkers") : config.getAsJsonObject("Lidars");
+    }
+
+    private static List<LiDarWorkerTracker> loadLidars(JsonArray configurations, Path data) {
+        LiDarDataBase.getInstance(data.toString());
+        List<LiDarWorkerTracker> lidars = new ArrayList<>();
+        for (JsonElement element : configurations) {
+            JsonObject l = element.getAsJsonObject();
+            lidars.add(new LiDarWorkerTracker(l.get("id").getAsInt(), l.get("frequency").getAsInt(),
+                    l.has("voxel_leaf_size") ? l.get("voxel_leaf_size").getAsDouble() : 0));
+        }
+        return lidars;
+    }
+
+    private static List<Pose> loadPoses(Path file) throws IOException {
+        Type type = new TypeToken<List<Pose>>() { }.getType();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<Pose> poses = GSON.fromJson(reader, type);
+            return poses == null ? Collections.<Pose>emptyList() : poses;
+        }
+    }
+
+    private static void writeOutput(Path file, FusionSlam fusionSlam, List<Camera> cameras,
+                                    List<LiDarWorkerTracker> lidars, GPSIMU gpsimu, boolean reportPending,
+                                    Map<String, Object> startup) throws IOException {
+        Map<String, Object> occupancy = null;
+        OccupancyGrid grid = fusionSlam.getOccupancyGrid();
+        if (grid != null) {
+            Path gridFile = file.resolveSibling("occupancy_grid.bin");
+            grid.write(gridFile);
+            occupancy = new LinkedHashMap<>();
+            occupancy.put("file", gridFile.getFileName().toString());
+            occupancy.put("cellSize", grid.getCellSize());
+            occupancy.put("tiles", grid.getTileCount());
+            occupancy.put("bytes", Files.size(gridFile));
+        }
+        Map<String, Object> pending = reportPending ? fusionSlam.getPendingStatistics() : null;
+        Map<String, Object> output = new LinkedHashMap<>();
+        if (fusionSlam.isCrashed()) {
+            output.put("error", fusionSlam.getError());
+            output.put("faultySensor", fusionSlam.getFaultySensor());
+            Map<String, Object> lastFrames = new LinkedHashMap<>();
+            for (Camera camera : cameras) {
+                if (camera.getLastFrame() != null) {
+                    lastFrames.put("Camera" + camera.getId(), camera.getLastFrame());
+                }
+            }
+            output.put("lastCamerasFrame", lastFrames);
+            Map<String, Object> lastTracked = new LinkedHashMap<>();
+            for (LiDarWorkerTracker lidar : lidars) {
+                lastTracked.put("LiDarWorkerTracker" + lidar.getId(), lidar.getLastTrackedObjects());
+            }
+            output.put("lastLiDarWorkerTrackersFrame", lastTracked);
+            output.put("poses", gpsimu.getPoseList(gpsimu.getCurrentTick()));
+            output.put("statistics", statistics(fusionSlam, lidars, pending, occupancy, startup));
+        } else {
+            output.putAll(statistics(fusionSlam, lidars, pending, occupancy, startup));
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            GSON.toJson(output, writer);
+        }
+    }
+
+    /**
+     * @return when each input file was ready and when the first tick was sent,
+     *         in milliseconds since the runner started.
+     */
+    private static Map<String, Object> startup(long start, Map<String, Long> readyAt) {
+        Map<String, Object> loaded = new LinkedHashMap<>();
+        for (String file : new String[]{"configuration", "poses", "lidarData", "cameraData"}) {
+            if (readyAt.containsKey(file)) {
+                loaded.put(file, millisSince(start, readyAt.get(file)));
+            }
+        }
+        Map<String, Object> startup = new LinkedHashMap<>();
+        startup.put("loadMillis", loaded);
+        startup.put("timeToFirstTickMillis", millisSince(start, StatisticalFolder.getInstance().getFirstTickTime()));
+        return startup;
+    }
+
+    /**
+     * @return the points each LiDAR that thins them out recorded and reported,
+     *         and the fusion time the points it dropped are estimated to save.
+     */
+    private static Map<String, Object> downsampling(FusionSlam fusionSlam, List<LiDarWorkerTracker> lidars) {
+        long fused = fusionSlam.getFusedPoints();
+        double nanosPerPoint = fused == 0 ? 0 : (double) fusionSlam.getFusionNanos() / fused;
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (LiDarWorkerTracker lidar : lidars) {
+            if (lidar.getLeafSize() > 0) {
+                Map<String, Object> points = new LinkedHashMap<>();
+                points.put("leafSize", lidar.getLeafSize());
+                points.put("pointsRecorded", lidar.getPointsRecorded());
+                points.put("pointsReported", lidar.getPointsReported());
+                points.put("fusionNanosSaved",
+                        Math.round((lidar.getPointsRecorded() - lidar.getPointsReported()) * nanosPerPoint));
+                result.put("LiDarWorkerTracker" + lidar.getId(), points);
+            }
+        }
+        return result;
+    }
+
+    private static double millisSince(long start, long time) {
+        return Math.round((time - start) / 1e3) / 1e3;
+    }
 
-        // TODO: Parse configuration file.
-        // TODO: Initialize system components and services.
-        // TODO: Start the simulation.
+    private static Map<String, Object> statistics(FusionSlam fusionSlam, List<LiDarWorkerTracker> lidars,
+                                                  Map<String, Object> pending, Map<String, Object> occupancy,
+                                                  Map<String, Object> startup) {
+        StatisticalFolder stats = StatisticalFolder.getInstance();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("systemRuntime", stats.getSystemRuntime());
+        result.put("numDetectedObjects", stats.getNumDetectedObjects());
+        result.put("numTrackedObjects", stats.getNumTrackedObjects());
+        result.put("numLandmarks", stats.getNumLandmarks());
+        Map<String, LandMark> landMarks = new LinkedHashMap<>();
+        for (LandMark landMark : fusionSlam.getLandmarks()) {
+            landMarks.put(landMark.getId(), landMark);
+        }
+        result.put("landMarks", landMarks);
+        if (pending != null) {
+            result.put("pendingObjects", pending);
+        }
+        Map<String, Object> downsampling = downsampling(fusionSlam, lidars);
+        if (!downsampling.isEmpty()) {
+            result.put("downsampling", downsampling);
+        }
+        if (occupancy != null) {
+            result.put("occupancyGrid", occupancy);
+        }
+        BusMetrics metrics = BusMetrics.getInstance();
+        if (metrics != null) {
+            result.put("messageBus", metrics.snapshot());
+        }
+        if (startup != null) {
+            result.put("startup", startup);
+        }
+        return result;
     }
 }
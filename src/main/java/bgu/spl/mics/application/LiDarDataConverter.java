@@ -0,0 +1,31 @@
+package bgu.spl.mics.application;
+
+import bgu.spl.mics.application.objects.LiDarDataBase;
+
+import java.io.IOException;
+
+/**
+ * Converts a JSON LiDAR recording to the binary format, which the simulation
+ * memory-maps at startup instead of parsing (see {@link LiDarDataBase}).
+ * The configuration's {@code lidars_data_path} may point at either format.
+ */
+public class LiDarDataConverter {
+
+    /**
+     * @param args the JSON recording to read and the binary file to write.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: LiDarDataConverter <lidar data json> <binary output>");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            LiDarDataBase.convertToBinary(args[0], args[1]);
+            System.out.printf("Converted %s to %s in %d ms%n", args[0], args[1],
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Conversion failed: " + e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Broadcast;
+
+/**
+ * Sent by a sensor service when its sensor reports an error.
+ * Every service terminates when it receives it.
+ */
+public class CrashedBroadcast implements Broadcast {
+    private final String faultySensor;
+    private final String error;
+
+    public CrashedBroadcast(String faultySensor, String error) {
+        this.faultySensor = faultySensor;
+        this.error = error;
+    }
+
+    public String getFaultySensor() {
+        return faultySensor;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,26 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+
+/**
+ * Sent by a CameraService to the LiDAR workers with the objects its camera
+ * detected at a given time. Resolved to true once a worker has tracked them.
+ */
+public class DetectObjectsEvent implements Event<Boolean> {
+    private final StampedDetectedObjects detectedObjects;
+    private final String senderName;
+
+    public DetectObjectsEvent(StampedDetectedObjects detectedObjects, String senderName) {
+        this.detectedObjects = detectedObjects;
+        this.senderName = senderName;
+    }
+
+    public StampedDetectedObjects getDetectedObjects() {
+        return detectedObjects;
+    }
+
+    public String getSenderName() {
+        return senderName;
+    }
+}
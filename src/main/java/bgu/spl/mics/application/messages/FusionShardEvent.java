@@ -0,0 +1,62 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.RoutedEvent;
+import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sent by the FusionSlamService, when fusion is sharded, to update one shard
+ * of the map: either with a pose, which every shard receives, or with the
+ * tracked objects whose landmarks belong to that shard. The event carries the
+ * shard it updates, so whichever FusionShardService receives it updates the
+ * right one. It is routed by the shard's number, which keeps each shard's
+ * events on a single service, in order, while the services do not change.
+ * Resolved to true once the shard has handled them.
+ */
+public class FusionShardEvent implements RoutedEvent<Boolean> {
+    private final int number;
+    private final FusionSlam shard;
+    private final Pose pose;
+    private final List<TrackedObject> trackedObjects;
+
+    public FusionShardEvent(int number, FusionSlam shard, Pose pose) {
+        this.number = number;
+        this.shard = shard;
+        this.pose = pose;
+        this.trackedObjects = Collections.emptyList();
+    }
+
+    public FusionShardEvent(int number, FusionSlam shard, List<TrackedObject> trackedObjects) {
+        this.number = number;
+        this.shard = shard;
+        this.pose = null;
+        this.trackedObjects = trackedObjects;
+    }
+
+    @Override
+    public int getRoutingKey() {
+        return number;
+    }
+
+    /**
+     * @return the shard of the map to update.
+     */
+    public FusionSlam getShard() {
+        return shard;
+    }
+
+    /**
+     * @return the robot's pose, or null if the event carries tracked objects.
+     */
+    public Pose getPose() {
+        return pose;
+    }
+
+    public List<TrackedObject> getTrackedObjects() {
+        return trackedObjects;
+    }
+}
@@ -0,0 +1,358 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.BusRecorder;
+import bgu.spl.mics.Message;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.objects.CloudPoint;
+import bgu.spl.mics.application.objects.DetectedObject;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, append-only binary log of the messages sent during a run.
+ * <p>
+ * The log is the magic {@code "GRBUS001"} followed by one entry per message,
+ * in the order the messages were delivered. An entry is a kind byte, the tick
+ * it was sent at (the last {@link TickBroadcast} before it), the name of the
+ * micro-service that sent it, and then the message's own fields. Integers are
+ * written as variable-length numbers and coordinates as raw floats and
+ * doubles. Every string is written in full only the first time it occurs;
+ * after that it is written as its number in the order strings first occurred.
+ * Messages of types the log does not know are recorded by class name only.
+ */
+public final class MessageLog {
+    static final byte[] MAGIC = "GRBUS001".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The kinds of log entries.
+     */
+    public enum Kind {
+        OTHER, TICK, TERMINATED, CRASHED, DETECT_OBJECTS, TRACKED_OBJECTS, POSE
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private MessageLog() {
+    }
+
+    /**
+     * One logged message.
+     */
+    public static final class Entry {
+        private final Kind kind;
+        private final int tick;
+        private final String source;
+        private final Message message;
+
+        private Entry(Kind kind, int tick, String source, Message message) {
+            this.kind = kind;
+            this.tick = tick;
+            this.source = source;
+            this.message = message;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getTick() {
+            return tick;
+        }
+
+        /**
+         * @return the name of the micro-service that sent the message, or null.
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * @return the message, or null for a message of a type the log does not know.
+         */
+        public Message getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Writes the messages sent through the bus to a log file. Install it with
+     * {@link BusRecorder#install(BusRecorder)} and close it once the run is
+     * over. If writing fails the recorder stops, and {@link #close()} reports
+     * the failure.
+     */
+    public static final class Recorder extends BusRecorder implements Closeable {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private int tick = 0;
+        private long entries = 0;
+        private IOException failure;
+
+        public Recorder(Path file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            out.write(MAGIC);
+        }
+
+        @Override
+        protected void record(Message message, String source) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                write(message, source);
+                entries++;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * @return the number of messages recorded so far.
+         */
+        public synchronized long getEntries() {
+            return entries;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void write(Message message, String source) throws IOException {
+            if (message instanceof TickBroadcast) {
+                tick = ((TickBroadcast) message).getTick();
+                header(Kind.TICK, source);
+                writeInt(tick);
+            } else if (message instanceof TerminatedBroadcast) {
+                TerminatedBroadcast terminated = (TerminatedBroadcast) message;
+                header(Kind.TERMINATED, source);
+                writeString(terminated.getSenderName());
+                writeString(terminated.getSenderType() == null ? null : terminated.getSenderType().getName());
+            } else if (message instanceof CrashedBroadcast) {
+                CrashedBroadcast crashed = (CrashedBroadcast) message;
+                header(Kind.CRASHED, source);
+                writeString(crashed.getFaultySensor());
+                writeString(crashed.getError());
+            } else if (message instanceof DetectObjectsEvent) {
+                DetectObjectsEvent event = (DetectObjectsEvent) message;
+                header(Kind.DETECT_OBJECTS, source);
+                writeString(event.getSenderName());
+                writeInt(event.getDetectedObjects().getTime());
+                List<DetectedObject> objects = event.getDetectedObjects().getDetectedObjects();
+                writeInt(objects.size());
+                for (DetectedObject object : objects) {
+                    writeString(object.getId());
+                    writeString(object.getDescription());
+                }
+            } else if (message instanceof TrackedObjectsEvent) {
+                TrackedObjectsEvent event = (TrackedObjectsEvent) message;
+                header(Kind.TRACKED_OBJECTS, source);
+                writeString(event.getSenderName());
+                writeInt(event.getTrackedObjects().size());
+                for (TrackedObject object : event.getTrackedObjects()) {
+                    writeString(object.getId());
+                    writeInt(object.getTime());
+                    writeString(object.getDescription());
+                    writeInt(object.getCoordinates().size());
+                    for (CloudPoint point : object.getCoordinates()) {
+                        out.writeDouble(point.getX());
+                        out.writeDouble(point.getY());
+                    }
+                }
+            } else if (message instanceof PoseEvent) {
+                Pose pose = ((PoseEvent) message).getPose();
+                header(Kind.POSE, source);
+                writeInt(pose.getTime());
+                out.writeFloat(pose.getX());
+                out.writeFloat(pose.getY());
+                out.writeFloat(pose.getYaw());
+            } else {
+                header(Kind.OTHER, source);
+                writeString(message.getClass().getName());
+            }
+        }
+
+        private void header(Kind kind, String source) throws IOException {
+            out.writeByte(kind.ordinal());
+            writeInt(tick);
+            writeString(source);
+        }
+
+        /**
+         * Writes a number in 7-bit groups, lowest first. Small non-negative
+         * numbers take a single byte, negative ones take five.
+         */
+        private void writeInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        /**
+         * Writes 0 for null, the string's number plus one if it was written
+         * before, and otherwise the next number followed by the string.
+         */
+        private void writeString(String s) throws IOException {
+            if (s == null) {
+                writeInt(0);
+                return;
+            }
+            Integer known = strings.get(s);
+            if (known != null) {
+                writeInt(known);
+                return;
+            }
+            int number = strings.size() + 1;
+            strings.put(s, number);
+            writeInt(number);
+            out.writeUTF(s);
+        }
+    }
+
+    /**
+     * Reads a log back, one entry at a time. The messages it returns are new
+     * objects equal in content to the ones that were sent.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        public Reader(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            byte[] magic = new byte[MAGIC.length];
+            try {
+                in.readFully(magic);
+            } catch (EOFException e) {
+                magic = null;
+            }
+            if (!Arrays.equals(magic, MAGIC)) {
+                in.close();
+                throw new IOException(file + " is not a message log");
+            }
+        }
+
+        /**
+         * @return the next entry, or null at the end of the log.
+         */
+        public Entry next() throws IOException {
+            int kindNumber = in.read();
+            if (kindNumber < 0) {
+                return null;
+            }
+            if (kindNumber >= KINDS.length) {
+                throw new IOException("Unknown log entry kind " + kindNumber);
+            }
+            Kind kind = KINDS[kindNumber];
+            int tick = readInt();
+            String source = readString();
+            return new Entry(kind, tick, source, readMessage(kind));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private Message readMessage(Kind kind) throws IOException {
+            switch (kind) {
+                case TICK:
+                    return new TickBroadcast(readInt());
+                case TERMINATED:
+                    return new TerminatedBroadcast(readString(), serviceType(readString()));
+                case CRASHED:
+                    return new CrashedBroadcast(readString(), readString());
+                case DETECT_OBJECTS: {
+                    String sender = readString();
+                    int time = readInt();
+                    int count = readInt();
+                    List<DetectedObject> objects = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        objects.add(new DetectedObject(readString(), readString()));
+                    }
+                    return new DetectObjectsEvent(new StampedDetectedObjects(time, objects), sender);
+                }
+                case TRACKED_OBJECTS: {
+                    String sender = readString();
+                    int count = readInt();
+                    List<TrackedObject> objects = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        String id = readString();
+                        int time = readInt();
+                        String description = readString();
+                        int points = readInt();
+                        List<CloudPoint> coordinates = new ArrayList<>(points);
+                        for (int p = 0; p < points; p++) {
+                            coordinates.add(new CloudPoint(in.readDouble(), in.readDouble()));
+                        }
+                        objects.add(new TrackedObject(id, time, description, coordinates));
+                    }
+                    return new TrackedObjectsEvent(objects, sender);
+                }
+                case POSE: {
+                    int time = readInt();
+                    return new PoseEvent(new Pose(in.readFloat(), in.readFloat(), in.readFloat(), time));
+                }
+                default:
+                    readString(); // the class name
+                    return null;
+            }
+        }
+
+        private int readInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        private String readString() throws IOException {
+            int number = readInt();
+            if (number == 0) {
+                return null;
+            }
+            if (number <= strings.size()) {
+                return strings.get(number - 1);
+            }
+            String s = in.readUTF();
+            strings.add(s);
+            return s;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Class<? extends MicroService> serviceType(String name) throws IOException {
+            if (name == null) {
+                return null;
+            }
+            try {
+                return (Class<? extends MicroService>) Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown micro-service type " + name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.application.objects.Pose;
+
+/**
+ * Sent by the PoseService to the FusionSlamService with the robot's pose at
+ * the current tick.
+ */
+public class PoseEvent implements Event<Boolean> {
+    private final Pose pose;
+
+    public PoseEvent(Pose pose) {
+        this.pose = pose;
+    }
+
+    public Pose getPose() {
+        return pose;
+    }
+}
@@ -0,0 +1,25 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.MicroService;
+
+/**
+ * Sent by a service when it finishes its work and terminates.
+ */
+public class TerminatedBroadcast implements Broadcast {
+    private final String senderName;
+    private final Class<? extends MicroService> senderType;
+
+    public TerminatedBroadcast(String senderName, Class<? extends MicroService> senderType) {
+        this.senderName = senderName;
+        this.senderType = senderType;
+    }
+
+    public String getSenderName() {
+        return senderName;
+    }
+
+    public Class<? extends MicroService> getSenderType() {
+        return senderType;
+    }
+}
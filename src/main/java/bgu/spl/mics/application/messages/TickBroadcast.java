@@ -0,0 +1,36 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Broadcast;
+
+/**
+ * Sent by the TimeService at every tick of the simulation clock.
+ */
+public class TickBroadcast implements Broadcast {
+    private final int tick;
+    private final boolean last;
+
+    public TickBroadcast(int tick) {
+        this(tick, false);
+    }
+
+    /**
+     * @param last whether this is the last tick of the run, after which the
+     *             TimeService terminates.
+     */
+    public TickBroadcast(int tick, boolean last) {
+        this.tick = tick;
+        this.last = last;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * @return true if no tick follows this one, so whatever waits for a later
+     *         tick must be done now.
+     */
+    public boolean isLast() {
+        return last;
+    }
+}
@@ -0,0 +1,28 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Event;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+import java.util.List;
+
+/**
+ * Sent by a LiDarService to the FusionSlamService with the objects its
+ * worker tracked. Resolved to true once fusion has handled them.
+ */
+public class TrackedObjectsEvent implements Event<Boolean> {
+    private final List<TrackedObject> trackedObjects;
+    private final String senderName;
+
+    public TrackedObjectsEvent(List<TrackedObject> trackedObjects, String senderName) {
+        this.trackedObjects = trackedObjects;
+        this.senderName = senderName;
+    }
+
+    public List<TrackedObject> getTrackedObjects() {
+        return trackedObjects;
+    }
+
+    public String getSenderName() {
+        return senderName;
+    }
+}
@@ -1,9 +1,191 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * Represents a camera sensor on the robot.
  * Responsible for detecting objects in the environment.
+ * <p>
+ * Objects detected at time {@code T} are reported at tick {@code T + frequency}.
+ * <p>
+ * The camera reads its frames forward as the ticks advance and keeps only
+ * the window it still needs: at tick {@code T}, the frames detected from
+ * {@code T - frequency} to {@code T}, and the first frame after them. Its memory does not grow with the
+ * length of the recording.
  */
 public class Camera {
-    // TODO: Define fields and methods.
+    /**
+     * The id a detected object carries when the camera malfunctioned.
+     */
+    public static final String ERROR_ID = "ERROR";
+
+    private final int id;
+    private final int frequency;
+    private final String cameraKey;
+    private STATUS status = STATUS.UP;
+    private final Iterator<StampedDetectedObjects> frames;
+    private final ArrayDeque<StampedDetectedObjects> window = new ArrayDeque<>();
+    private StampedDetectedObjects lastFrame;
+    private String readError;
+
+    /**
+     * @param id                  the camera id.
+     * @param frequency           the number of ticks it takes the camera to report a detection.
+     * @param cameraKey           the key of the camera's data in the camera data file.
+     * @param detectedObjectsList everything the camera detects during the run, ordered by time.
+     */
+    public Camera(int id, int frequency, String cameraKey, List<StampedDetectedObjects> detectedObjectsList) {
+        this(id, frequency, cameraKey, detectedObjectsList.iterator());
+    }
+
+    /**
+     * Creates a camera that reads its frames from the camera data file as it
+     * needs them.
+     *
+     * @param id        the camera id.
+     * @param frequency the number of ticks it takes the camera to report a detection.
+     * @param cameraKey the key of the camera's data in the camera data file.
+     * @param dataFile  the camera data file, whose frames of each camera are ordered by time.
+     * @throws IOException if the file cannot be read.
+     */
+    public Camera(int id, int frequency, String cameraKey, Path dataFile) throws IOException {
+        this(id, frequency, cameraKey, CameraDataIndex.of(dataFile));
+    }
+
+    /**
+     * Creates a camera that reads its frames from an indexed camera data file
+     * as it needs them. Cameras that share the index share its single pass
+     * over the file.
+     *
+     * @param id        the camera id.
+     * @param frequency the number of ticks it takes the camera to report a detection.
+     * @param cameraKey the key of the camera's data in the camera data file.
+     * @param dataIndex the index of the camera data file, whose frames of each camera are ordered by time.
+     * @throws IOException if the file cannot be read.
+     */
+    public Camera(int id, int frequency, String cameraKey, CameraDataIndex dataIndex) throws IOException {
+        this(id, frequency, cameraKey, new CameraFrameReader(dataIndex, cameraKey));
+    }
+
+    private Camera(int id, int frequency, String cameraKey, Iterator<StampedDetectedObjects> frames) {
+        this.id = id;
+        this.frequency = frequency;
+        this.cameraKey = cameraKey;
+        this.frames = frames;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+
+    public String getCameraKey() {
+        return cameraKey;
+    }
+
+    public STATUS getStatus() {
+        return status;
+    }
+
+    public void setStatus(STATUS status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the last frame the camera reported, or null if it reported none.
+     */
+    public StampedDetectedObjects getLastFrame() {
+        return lastFrame;
+    }
+
+    /**
+     * @param tick the current tick.
+     * @return the description of the error the camera detects at {@code tick},
+     *         or null if it works properly. Failing to read the camera data
+     *         is an error too.
+     */
+    public String findError(int tick) {
+        advance(tick);
+        if (readError != null) {
+            return readError;
+        }
+        StampedDetectedObjects frame = frameAt(tick);
+        if (frame != null) {
+            for (DetectedObject object : frame.getDetectedObjects()) {
+                if (ERROR_ID.equals(object.getId())) {
+                    return object.getDescription();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the frame to report at {@code tick}, which is the frame detected
+     * {@code frequency} ticks earlier, and remembers it as the last frame.
+     *
+     * @param tick the current tick.
+     * @return the frame to report, or null if there is nothing to report.
+     */
+    public StampedDetectedObjects detect(int tick) {
+        advance(tick);
+        StampedDetectedObjects frame = frameAt(tick - frequency);
+        if (frame != null) {
+            lastFrame = frame;
+        }
+        return frame;
+    }
+
+    /**
+     * @param tick the current tick.
+     * @return true if the camera has reported everything it will ever detect.
+     */
+    public boolean isDone(int tick) {
+        advance(tick);
+        return window.isEmpty() && !frames.hasNext();
+    }
+
+    /**
+     * Stops reading the camera data, if the camera is still reading it.
+     */
+    public void close() {
+        if (frames instanceof CameraFrameReader) {
+            ((CameraFrameReader) frames).close();
+        }
+    }
+
+    /**
+     * Reads the frames detected up to {@code tick} and forgets those that were
+     * already reported.
+     */
+    private void advance(int tick) {
+        try {
+            while (readError == null && frames.hasNext()
+                    && (window.isEmpty() || window.peekLast().getTime() < tick)) {
+                window.addLast(frames.next());
+            }
+        } catch (UncheckedIOException e) {
+            readError = "Cannot read the camera data: " + e.getCause().getMessage();
+        }
+        while (!window.isEmpty() && window.peekFirst().getTime() < tick - frequency) {
+            window.removeFirst();
+        }
+    }
+
+    private StampedDetectedObjects frameAt(int time) {
+        for (StampedDetectedObjects frame : window) {
+            if (frame.getTime() == time) {
+                return frame;
+            }
+        }
+        return null;
+    }
 }
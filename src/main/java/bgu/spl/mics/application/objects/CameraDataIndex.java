@@ -0,0 +1,142 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Where each camera's frames start in the camera data file.
+ * <p>
+ * The file is an object holding every camera's frames under its camera key.
+ * {@link #of(Path)} finds the keys in a single pass over the file's bytes,
+ * which only follows strings and nesting and builds nothing, and records the
+ * byte offset of every key's list of frames. Each camera's
+ * {@link CameraFrameReader} then starts reading at its own offset, so the
+ * file is scanned once however many cameras there are.
+ * <p>
+ * Immutable once built, so the cameras share it.
+ */
+public final class CameraDataIndex {
+    private final Path file;
+    private final Map<String, Long> offsets;
+
+    private CameraDataIndex(Path file, Map<String, Long> offsets) {
+        this.file = file;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Indexes the camera data file {@code file}.
+     *
+     * @throws IOException if the file cannot be read, or does not hold an object.
+     */
+    public static CameraDataIndex of(Path file) throws IOException {
+        Map<String, Long> offsets = new HashMap<>();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[1 << 16];
+            long position = 0;
+            int depth = 0;
+            boolean started = false;
+            boolean inString = false;
+            boolean escaped = false;
+            boolean expectKey = false;
+            ByteArrayOutputStream key = null; // the top-level key being read
+            String valueOf = null;            // the top-level key whose value comes next
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                            if (key != null) {
+                                valueOf = decode(key);
+                                key = null;
+                            }
+                            continue;
+                        }
+                        if (key != null) {
+                            key.write(b);
+                        }
+                        continue;
+                    }
+                    if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                        continue;
+                    }
+                    if (!started) {
+                        if (b != '{') {
+                            throw new IOException(file + " does not hold an object of camera keys");
+                        }
+                        started = true;
+                    }
+                    if (valueOf != null && b != ':') {
+                        if (b == '[') {
+                            offsets.putIfAbsent(valueOf, position);
+                        }
+                        valueOf = null;
+                    }
+                    switch (b) {
+                        case '"':
+                            inString = true;
+                            if (depth == 1 && expectKey) {
+                                key = new ByteArrayOutputStream();
+                                expectKey = false;
+                            }
+                            break;
+                        case '{':
+                            depth++;
+                            expectKey = depth == 1;
+                            break;
+                        case '[':
+                            depth++;
+                            break;
+                        case '}':
+                        case ']':
+                            depth--;
+                            break;
+                        case ',':
+                            expectKey = depth == 1;
+                            break;
+                        default:
+                    }
+                }
+            }
+        }
+        return new CameraDataIndex(file, offsets);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the byte offset of the list of frames of {@code cameraKey}, or
+     *         -1 if the file has none.
+     */
+    public long offsetOf(String cameraKey) {
+        Long offset = offsets.get(cameraKey);
+        return offset == null ? -1 : offset;
+    }
+
+    private static String decode(ByteArrayOutputStream key) throws IOException {
+        String raw = new String(key.toByteArray(), StandardCharsets.UTF_8);
+        if (raw.indexOf('\\') < 0) {
+            return raw;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader('"' + raw + '"'))) {
+            return reader.nextString();
+        }
+    }
+}
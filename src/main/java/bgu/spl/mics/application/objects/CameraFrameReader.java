@@ -0,0 +1,156 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads one camera's frames from the camera data file, one frame at a time.
+ * <p>
+ * The file is an object holding every camera's frames under its camera key,
+ * given either as a list of frames or as a list of lists of frames. The
+ * reader starts at the camera's frames, whose offset a {@link CameraDataIndex}
+ * found, and then reads a frame only when it is asked for the next one. The
+ * file is closed once the camera's frames end.
+ */
+final class CameraFrameReader implements Iterator<StampedDetectedObjects>, Closeable {
+    private final JsonReader reader; // null if the camera has no frames
+    private int depth = 0; // of nested frame lists, 0 once they end
+    private StampedDetectedObjects next;
+
+    /**
+     * Opens the indexed file at the frames of {@code cameraKey}.
+     */
+    CameraFrameReader(CameraDataIndex index, String cameraKey) throws IOException {
+        long offset = index.offsetOf(cameraKey);
+        if (offset < 0) {
+            reader = null; // no frames for this camera
+            return;
+        }
+        SeekableByteChannel channel = Files.newByteChannel(index.getFile());
+        reader = new JsonReader(Channels.newReader(channel.position(offset), StandardCharsets.UTF_8.newDecoder(), -1));
+        try {
+            reader.beginArray();
+            depth = 1;
+            next = read();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    /**
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    @Override
+    public StampedDetectedObjects next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        StampedDetectedObjects frame = next;
+        try {
+            next = read();
+        } catch (IOException e) {
+            next = null;
+            close();
+            throw new UncheckedIOException(e);
+        }
+        return frame;
+    }
+
+    @Override
+    public void close() {
+        depth = 0;
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // nothing left to read anyway
+        }
+    }
+
+    /**
+     * @return the next frame in the nested lists, or null once they end.
+     */
+    private StampedDetectedObjects read() throws IOException {
+        while (depth > 0) {
+            switch (reader.peek()) {
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    depth--;
+                    break;
+                case BEGIN_OBJECT:
+                    return readFrame();
+                default:
+                    reader.skipValue();
+            }
+        }
+        close();
+        return null;
+    }
+
+    private StampedDetectedObjects readFrame() throws IOException {
+        int time = 0;
+        List<DetectedObject> objects = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "time":
+                    time = reader.nextInt();
+                    break;
+                case "detectedObjects":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        objects.add(readObject());
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new StampedDetectedObjects(time, objects);
+    }
+
+    private DetectedObject readObject() throws IOException {
+        String id = null;
+        String description = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "description":
+                    description = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new DetectedObject(id, description);
+    }
+}
@@ -0,0 +1,53 @@
+package bgu.spl.mics.application.objects;
+
+/**
+ * The records of a LiDAR recording, as read by the {@link LiDarDataBase}.
+ * <p>
+ * Records are numbered in order of time (in file order within a time), and
+ * the points of all the records are numbered consecutively, so a record is
+ * its time, its object id and a range of points.
+ * The store is immutable once loaded, so any thread may read it.
+ */
+abstract class CloudPointStore {
+
+    abstract int recordCount();
+
+    abstract int time(int record);
+
+    abstract String id(int record);
+
+    /**
+     * @return the number of the record's first point.
+     */
+    abstract int firstPoint(int record);
+
+    abstract int pointCount(int record);
+
+    abstract double x(int point);
+
+    abstract double y(int point);
+
+    /**
+     * @return the first record whose time is {@code time} or later, or
+     *         {@link #recordCount()} if there is none.
+     */
+    final int firstAt(int time) {
+        return firstAt(time, 0, recordCount());
+    }
+
+    /**
+     * @return the first record in {@code [low, high)} whose time is {@code time}
+     *         or later, or {@code high} if there is none.
+     */
+    final int firstAt(int time, int low, int high) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (time(mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -1,13 +1,404 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * Manages the fusion of sensor data for simultaneous localization and mapping (SLAM).
  * Combines data from multiple sensors (e.g., LiDAR, camera) to build and update a global map.
  * Implements the Singleton pattern to ensure a single instance of FusionSlam exists.
+ * <p>
+ * FusionSlam is only updated by the FusionSlamService, so it needs no locking,
+ * and it transforms every tracked object in the same reusable buffers, which
+ * a known landmark then averages into its own points in place.
+ * <p>
+ * Landmarks are found by id through a hash map, and by position through a
+ * {@link LandmarkGrid}, which is kept up to date as landmarks are added and
+ * refined.
+ * <p>
+ * The map may be split into shards (see {@link #setShards(int)}), each an
+ * independent FusionSlam updated by its own FusionShardService, with the
+ * landmarks divided among them by id. The instance then only collects the
+ * sensors' terminations and the crash, and its landmark queries merge the
+ * shards' answers, so they may only be used once fusion is over.
+ * <p>
+ * FusionSlam may also keep an {@link OccupancyGrid}, which every transformed
+ * cloud updates (see {@link #setOccupancyCellSize(double)}).
  */
 public class FusionSlam {
     // Singleton instance holder
     private static class FusionSlamHolder {
-        // TODO: Implement singleton instance logic.
+        private static final FusionSlam instance = new FusionSlam();
+    }
+
+    /**
+     * The side of the landmark grid's cells, in meters.
+     */
+    public static final double GRID_CELL_SIZE = 2.0;
+
+    private final List<LandMark> landmarks = new ArrayList<>();
+    private final Map<String, LandMark> landmarksById = new HashMap<>();
+    private final LandmarkGrid grid = new LandmarkGrid(GRID_CELL_SIZE);
+    private final PoseIndex poses = new PoseIndex();
+    private final PendingObjects waitingForPose = new PendingObjects(PendingObjects.DEFAULT_LIMIT);
+    private double[] globalX = new double[64];
+    private double[] globalY = new double[64];
+    private final List<FusionSlam> shards = new ArrayList<>();
+    private OccupancyGrid occupancy; // null unless it is kept
+    private long fusedPoints = 0;
+    private long fusionNanos = 0;
+    private int activeSensors = 0;
+    private String error;
+    private String faultySensor;
+
+    private FusionSlam() {
+    }
+
+    public static FusionSlam getInstance() {
+        return FusionSlamHolder.instance;
+    }
+
+    /**
+     * Splits the map into {@code count} shards. Must be called before fusion
+     * starts; a count of one or less leaves the map whole.
+     */
+    public void setShards(int count) {
+        shards.clear();
+        for (int i = 0; count > 1 && i < count; i++) {
+            FusionSlam shard = new FusionSlam();
+            shard.setPendingLimit(waitingForPose.getLimit());
+            if (occupancy != null) {
+                shard.setOccupancyCellSize(occupancy.getCellSize());
+            }
+            shards.add(shard);
+        }
+    }
+
+    /**
+     * @return the shards the map is split into, or an empty list if it is whole.
+     */
+    public List<FusionSlam> getShards() {
+        return shards;
+    }
+
+    /**
+     * Sets the most tracked objects that may wait for their pose at once,
+     * in this map and in each of its shards. Beyond it, the objects of the
+     * oldest time are dropped (see {@link PendingObjects}).
+     */
+    public void setPendingLimit(int limit) {
+        waitingForPose.setLimit(limit);
+        for (FusionSlam shard : shards) {
+            shard.setPendingLimit(limit);
+        }
+    }
+
+    /**
+     * Starts keeping an occupancy grid with cells of {@code cellSize} meters,
+     * in this map and in each of its shards. Must be called before fusion
+     * starts.
+     */
+    public void setOccupancyCellSize(double cellSize) {
+        occupancy = new OccupancyGrid(cellSize);
+        for (FusionSlam shard : shards) {
+            shard.setOccupancyCellSize(cellSize);
+        }
+    }
+
+    /**
+     * @return the occupancy grid, or null if none is kept. For a sharded map
+     *         it is a new grid merging the shards' grids, so it may only be
+     *         asked for once fusion is over.
+     */
+    public OccupancyGrid getOccupancyGrid() {
+        if (occupancy == null || shards.isEmpty()) {
+            return occupancy;
+        }
+        OccupancyGrid merged = new OccupancyGrid(occupancy.getCellSize());
+        for (FusionSlam shard : shards) {
+            merged.merge(shard.occupancy);
+        }
+        return merged;
+    }
+
+    /**
+     * @return the counts of the objects that waited for their pose. For a
+     *         sharded map the counts are summed over the shards, except
+     *         {@code maxHeld}, which is the most any one shard held.
+     */
+    public Map<String, Object> getPendingStatistics() {
+        if (shards.isEmpty()) {
+            return waitingForPose.snapshot();
+        }
+        int held = 0;
+        int maxHeld = 0;
+        long drained = 0;
+        long dropped = 0;
+        for (FusionSlam shard : shards) {
+            held += shard.waitingForPose.getHeld();
+            maxHeld = Math.max(maxHeld, shard.waitingForPose.getMaxHeld());
+            drained += shard.waitingForPose.getDrained();
+            dropped += shard.waitingForPose.getDropped();
+        }
+        Map<String, Object> result = new TreeMap<>();
+        result.put("limit", waitingForPose.getLimit());
+        result.put("held", held);
+        result.put("maxHeld", maxHeld);
+        result.put("drained", drained);
+        result.put("dropped", dropped);
+        return result;
+    }
+
+    /**
+     * @return the number of points transformed and fused into the map, summed
+     *         over the shards of a sharded map.
+     */
+    public long getFusedPoints() {
+        long total = fusedPoints;
+        for (FusionSlam shard : shards) {
+            total += shard.fusedPoints;
+        }
+        return total;
+    }
+
+    /**
+     * @return the time spent transforming and fusing those points, in
+     *         nanoseconds, summed over the shards of a sharded map.
+     */
+    public long getFusionNanos() {
+        long total = fusionNanos;
+        for (FusionSlam shard : shards) {
+            total += shard.fusionNanos;
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of the shard that holds the landmark {@code id}.
+     */
+    public int shardOf(String id) {
+        return Math.floorMod(id.hashCode(), shards.size());
+    }
+
+    /**
+     * @return the landmarks, in the order they were first mapped. A sharded
+     *         map lists each shard's landmarks in turn.
+     */
+    public List<LandMark> getLandmarks() {
+        if (shards.isEmpty()) {
+            return landmarks;
+        }
+        List<LandMark> merged = new ArrayList<>();
+        for (FusionSlam shard : shards) {
+            merged.addAll(shard.landmarks);
+        }
+        return merged;
+    }
+
+    /**
+     * @return the landmarks whose centroid is within {@code radius} meters of
+     *         ({@code x}, {@code y}) in the global coordinate system.
+     */
+    public List<LandMark> getLandmarksWithin(double x, double y, double radius) {
+        if (shards.isEmpty()) {
+            return grid.within(x, y, radius);
+        }
+        List<LandMark> merged = new ArrayList<>();
+        for (FusionSlam shard : shards) {
+            merged.addAll(shard.grid.within(x, y, radius));
+        }
+        return merged;
+    }
+
+    /**
+     * @return the {@code k} landmarks whose centroids are nearest to
+     *         ({@code x}, {@code y}) in the global coordinate system, nearest first.
+     */
+    public List<LandMark> getNearestLandmarks(double x, double y, int k) {
+        if (shards.isEmpty()) {
+            return grid.nearest(x, y, k);
+        }
+        List<LandMark> merged = new ArrayList<>();
+        for (FusionSlam shard : shards) {
+            merged.addAll(shard.grid.nearest(x, y, k));
+        }
+        merged.sort(Comparator.comparingDouble(landmark -> distance2(landmark, x, y)));
+        return merged.size() > k ? new ArrayList<>(merged.subList(0, k)) : merged;
+    }
+
+    /**
+     * @return the poses received so far, ordered by time.
+     */
+    public List<Pose> getPoses() {
+        return poses.toList();
+    }
+
+    /**
+     * Records the robot's pose and fuses the tracked objects that were
+     * waiting for it.
+     */
+    public void addPose(Pose pose) {
+        poses.add(pose);
+        if (waitingForPose.isEmpty()) {
+            return;
+        }
+        for (TrackedObject object : waitingForPose.take(pose.getTime())) {
+            updateLandmark(object, pose);
+        }
+    }
+
+    /**
+     * Fuses tracked objects into the map. An object whose pose has not
+     * arrived yet is held until it does, unless the buffer of such objects
+     * is full (see {@link #setPendingLimit(int)}).
+     */
+    public void processTrackedObjects(List<TrackedObject> trackedObjects) {
+        for (TrackedObject object : trackedObjects) {
+            Pose pose = poses.get(object.getTime());
+            if (pose == null) {
+                waitingForPose.add(object);
+            } else {
+                updateLandmark(object, pose);
+            }
+        }
+    }
+
+    /**
+     * Converts {@code count} points from the robot's coordinate system at
+     * {@code pose} to the global coordinate system. The rotation is computed
+     * once for all of them, and the loop over the points neither calls nor
+     * allocates anything, so the JIT can vectorize it.
+     * The output arrays may be the input arrays, to transform in place.
+     *
+     * @param x       the points' x coordinates, relative to the robot.
+     * @param y       the points' y coordinates, relative to the robot.
+     * @param globalX receives the points' global x coordinates.
+     * @param globalY receives the points' global y coordinates.
+     */
+    public static void toGlobal(Pose pose, double[] x, double[] y, int count, double[] globalX, double[] globalY) {
+        double yaw = Math.toRadians(pose.getYaw());
+        double cos = Math.cos(yaw);
+        double sin = Math.sin(yaw);
+        double dx = pose.getX();
+        double dy = pose.getY();
+        for (int i = 0; i < count; i++) {
+            double px = x[i];
+            double py = y[i];
+            globalX[i] = cos * px - sin * py + dx;
+            globalY[i] = sin * px + cos * py + dy;
+        }
+    }
+
+    /**
+     * Converts points from the robot's coordinate system at {@code pose} to
+     * the global coordinate system.
+     */
+    public static List<CloudPoint> toGlobal(List<CloudPoint> points, Pose pose) {
+        double yaw = Math.toRadians(pose.getYaw());
+        double cos = Math.cos(yaw);
+        double sin = Math.sin(yaw);
+        List<CloudPoint> global = new ArrayList<>(points.size());
+        for (CloudPoint p : points) {
+            global.add(new CloudPoint(
+                    cos * p.getX() - sin * p.getY() + pose.getX(),
+                    sin * p.getX() + cos * p.getY() + pose.getY()));
+        }
+        return global;
+    }
+
+    /**
+     * @param count the number of sensor services that report to fusion.
+     */
+    public void setActiveSensors(int count) {
+        activeSensors = count;
+    }
+
+    /**
+     * Notes that one of the sensor services terminated.
+     *
+     * @return true if it was the last active one.
+     */
+    public boolean sensorTerminated() {
+        return --activeSensors <= 0;
+    }
+
+    /**
+     * Records the error that crashed the system.
+     */
+    public void reportCrash(String faultySensor, String error) {
+        this.faultySensor = faultySensor;
+        this.error = error;
+    }
+
+    /**
+     * @return true if a sensor crashed the system.
+     */
+    public boolean isCrashed() {
+        return error != null;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getFaultySensor() {
+        return faultySensor;
+    }
+
+    private void updateLandmark(TrackedObject object, Pose pose) {
+        long start = System.nanoTime();
+        fuse(object, pose);
+        fusionNanos += System.nanoTime() - start;
+        fusedPoints += object.getCoordinates().size();
+    }
+
+    private void fuse(TrackedObject object, Pose pose) {
+        List<CloudPoint> points = object.getCoordinates();
+        int count = points.size();
+        if (count > globalX.length) {
+            globalX = new double[Math.max(count, globalX.length * 2)];
+            globalY = new double[globalX.length];
+        }
+        for (int i = 0; i < count; i++) {
+            CloudPoint point = points.get(i);
+            globalX[i] = point.getX();
+            globalY[i] = point.getY();
+        }
+        toGlobal(pose, globalX, globalY, count, globalX, globalY);
+        if (occupancy != null) {
+            occupancy.addScan(pose.getX(), pose.getY(), globalX, globalY, count);
+        }
+        LandMark landmark = landmarksById.get(object.getId());
+        if (landmark != null) {
+            landmark.refine(globalX, globalY, count);
+            grid.update(landmark);
+            return;
+        }
+        landmark = new LandMark(object.getId(), object.getDescription(), globalX, globalY, count);
+        landmarks.add(landmark);
+        landmarksById.put(landmark.getId(), landmark);
+        grid.update(landmark);
+        StatisticalFolder.getInstance().incrementLandmarks();
+    }
+
+    /**
+     * @return the squared distance from ({@code x}, {@code y}) to the
+     *         landmark's centroid.
+     */
+    private static double distance2(LandMark landmark, double x, double y) {
+        int count = landmark.getPointCount();
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < count; i++) {
+            sumX += landmark.getX(i);
+            sumY += landmark.getY(i);
+        }
+        double dx = sumX / count - x;
+        double dy = sumY / count - y;
+        return dx * dx + dy * dy;
     }
 }
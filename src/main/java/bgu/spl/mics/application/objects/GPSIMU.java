@@ -1,9 +1,228 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
 /**
  * Represents the robot's GPS and IMU system.
  * Provides information about the robot's position and movement.
+ * <p>
+ * The poses are kept in primitive arrays. When the recorded ticks are dense
+ * enough (see {@link #DENSE_SLOTS_PER_POSE}) the arrays are indexed by tick,
+ * so the pose at a tick is found without searching. Otherwise, e.g. for time
+ * stamps in epoch milliseconds, only the recorded poses are kept, sorted by
+ * tick, and a tick is found by binary search. A GPSIMU may also interpolate
+ * the ticks that have no recorded pose between two that do: x and y
+ * linearly, and the yaw along the shorter arc between the two angles.
  */
 public class GPSIMU {
-    // TODO: Define fields and methods.
+    /**
+     * The most array slots per recorded pose (plus {@link #DENSE_SLACK}) that
+     * a tick-indexed layout may take. Sparser recordings are searched instead.
+     */
+    static final int DENSE_SLOTS_PER_POSE = 4;
+    static final int DENSE_SLACK = 64;
+
+    private int currentTick = 0;
+    private STATUS status = STATUS.UP;
+    private final boolean interpolate;
+    private final int firstTime;
+    private final int lastTime;
+    private final int[] times; // the recorded ticks, in order, or null if indexed by tick
+    private final float[] x;
+    private final float[] y;
+    private final float[] yaw;
+    private final boolean[] recorded; // indexed by tick only
+    private final boolean[] known;    // recorded or interpolated, indexed by tick only
+
+    /**
+     * @param poseList the robot's poses during the run.
+     */
+    public GPSIMU(List<Pose> poseList) {
+        this(poseList, false);
+    }
+
+    /**
+     * @param poseList    the robot's poses during the run. Of several poses
+     *                    of the same tick, the last one counts.
+     * @param interpolate whether to interpolate the poses of the ticks between recorded ones.
+     */
+    public GPSIMU(List<Pose> poseList, boolean interpolate) {
+        this.interpolate = interpolate;
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        for (Pose pose : poseList) {
+            first = Math.min(first, pose.getTime());
+            last = Math.max(last, pose.getTime());
+        }
+        firstTime = first;
+        lastTime = last;
+        long span = poseList.isEmpty() ? 0 : (long) last - first + 1;
+        if (span > (long) DENSE_SLOTS_PER_POSE * poseList.size() + DENSE_SLACK) {
+            List<Pose> sorted = new ArrayList<>(poseList);
+            sorted.sort(Comparator.comparingInt(Pose::getTime)); // stable: the last of a tick stays last
+            int[] t = new int[sorted.size()];
+            float[] px = new float[sorted.size()];
+            float[] py = new float[sorted.size()];
+            float[] pyaw = new float[sorted.size()];
+            int count = 0;
+            for (Pose pose : sorted) {
+                if (count > 0 && t[count - 1] == pose.getTime()) {
+                    count--; // replaced by the later pose
+                }
+                t[count] = pose.getTime();
+                px[count] = pose.getX();
+                py[count] = pose.getY();
+                pyaw[count] = pose.getYaw();
+                count++;
+            }
+            times = Arrays.copyOf(t, count);
+            x = Arrays.copyOf(px, count);
+            y = Arrays.copyOf(py, count);
+            yaw = Arrays.copyOf(pyaw, count);
+            recorded = null;
+            known = null;
+            return;
+        }
+        int length = (int) span;
+        times = null;
+        x = new float[length];
+        y = new float[length];
+        yaw = new float[length];
+        recorded = new boolean[length];
+        for (Pose pose : poseList) {
+            int i = pose.getTime() - first;
+            x[i] = pose.getX();
+            y[i] = pose.getY();
+            yaw[i] = pose.getYaw();
+            recorded[i] = true;
+        }
+        known = interpolate ? interpolateGaps() : recorded;
+    }
+
+    public int getCurrentTick() {
+        return currentTick;
+    }
+
+    public void setCurrentTick(int currentTick) {
+        this.currentTick = currentTick;
+    }
+
+    public STATUS getStatus() {
+        return status;
+    }
+
+    public void setStatus(STATUS status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the recorded poses, ordered by time.
+     */
+    public List<Pose> getPoseList() {
+        return getPoseList(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the recorded poses up to {@code tick}, ordered by time.
+     */
+    public List<Pose> getPoseList(int tick) {
+        List<Pose> poses = new ArrayList<>();
+        if (times != null) {
+            for (int i = 0; i < times.length && times[i] <= tick; i++) {
+                poses.add(new Pose(x[i], y[i], yaw[i], times[i]));
+            }
+            return poses;
+        }
+        for (int i = 0; i < recorded.length && firstTime + i <= tick; i++) {
+            if (recorded[i]) {
+                poses.add(new Pose(x[i], y[i], yaw[i], firstTime + i));
+            }
+        }
+        return poses;
+    }
+
+    /**
+     * @return the pose recorded, or interpolated, at {@code tick}, or null if there is none.
+     */
+    public Pose getPose(int tick) {
+        if (times != null) {
+            return searchPose(tick);
+        }
+        long i = (long) tick - firstTime;
+        if (i < 0 || i >= known.length || !known[(int) i]) {
+            return null;
+        }
+        return new Pose(x[(int) i], y[(int) i], yaw[(int) i], tick);
+    }
+
+    /**
+     * @return true if {@code tick} is past the last recorded pose.
+     */
+    public boolean isDone(int tick) {
+        return x.length == 0 || tick > lastTime;
+    }
+
+    /**
+     * Finds the pose at {@code tick} among the sorted recorded poses, and
+     * interpolates it as {@link #interpolateGaps()} would if it falls between two.
+     */
+    private Pose searchPose(int tick) {
+        int i = Arrays.binarySearch(times, tick);
+        if (i >= 0) {
+            return new Pose(x[i], y[i], yaw[i], tick);
+        }
+        int next = -i - 1;
+        if (!interpolate || next == 0 || next == times.length) {
+            return null;
+        }
+        int previous = next - 1;
+        float turn = shortestTurn(yaw[previous], yaw[next]);
+        float f = (float) ((long) tick - times[previous]) / ((long) times[next] - times[previous]);
+        return new Pose(x[previous] + (x[next] - x[previous]) * f,
+                y[previous] + (y[next] - y[previous]) * f,
+                yaw[previous] + turn * f, tick);
+    }
+
+    /**
+     * Fills every tick between two recorded poses.
+     *
+     * @return which ticks have a pose.
+     */
+    private boolean[] interpolateGaps() {
+        int previous = -1;
+        for (int i = 0; i < recorded.length; i++) {
+            if (!recorded[i]) {
+                continue;
+            }
+            if (previous >= 0 && i - previous > 1) {
+                float turn = shortestTurn(yaw[previous], yaw[i]);
+                for (int gap = previous + 1; gap < i; gap++) {
+                    float f = (float) (gap - previous) / (i - previous);
+                    x[gap] = x[previous] + (x[i] - x[previous]) * f;
+                    y[gap] = y[previous] + (y[i] - y[previous]) * f;
+                    yaw[gap] = yaw[previous] + turn * f;
+                }
+            }
+            previous = i;
+        }
+        boolean[] filled = new boolean[recorded.length];
+        Arrays.fill(filled, true); // the first and last ticks are recorded
+        return filled;
+    }
+
+    /**
+     * @return the signed angle, in degrees, of the shorter turn from {@code from} to {@code to}.
+     */
+    private static float shortestTurn(float from, float to) {
+        float turn = (to - from) % 360;
+        if (turn > 180) {
+            turn -= 360;
+        } else if (turn < -180) {
+            turn += 360;
+        }
+        return turn;
+    }
 }
@@ -1,9 +1,186 @@
 package bgu.spl.mics.application.objects;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Represents a landmark in the environment map.
  * Landmarks are identified and updated by the FusionSlam service.
+ * <p>
+ * The landmark's points are held as packed coordinate arrays, which a new
+ * observation refines in place (see {@link #refine}), so a landmark that is
+ * observed again and again allocates nothing. {@link CloudPoint}s are only
+ * built when they are asked for, and the landmark is written to JSON straight
+ * from its arrays, in the same form as a landmark with a list of points.
  */
+@JsonAdapter(LandMark.Adapter.class)
 public class LandMark {
-    // TODO: Define fields and methods.
+    private final String id;
+    private final String description;
+    private double[] x;
+    private double[] y;
+    private int size;
+
+    public LandMark(String id, String description, List<CloudPoint> coordinates) {
+        this.id = id;
+        this.description = description;
+        setCoordinates(coordinates);
+    }
+
+    /**
+     * Creates a landmark from the first {@code count} points of packed
+     * coordinate arrays, which are copied.
+     */
+    public LandMark(String id, String description, double[] x, double[] y, int count) {
+        this.id = id;
+        this.description = description;
+        this.x = Arrays.copyOf(x, count);
+        this.y = Arrays.copyOf(y, count);
+        this.size = count;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return a new list of the landmark's points, in the global coordinate system.
+     */
+    public List<CloudPoint> getCoordinates() {
+        List<CloudPoint> coordinates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            coordinates.add(new CloudPoint(x[i], y[i]));
+        }
+        return coordinates;
+    }
+
+    public void setCoordinates(List<CloudPoint> coordinates) {
+        size = coordinates.size();
+        x = new double[size];
+        y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = coordinates.get(i).getX();
+            y[i] = coordinates.get(i).getY();
+        }
+    }
+
+    /**
+     * @return the number of the landmark's points.
+     */
+    public int getPointCount() {
+        return size;
+    }
+
+    public double getX(int point) {
+        return x[point];
+    }
+
+    public double getY(int point) {
+        return y[point];
+    }
+
+    /**
+     * Averages a new observation of the landmark into its points, point by
+     * point. Points only one of them has are kept as they are. The arrays
+     * only grow, and so allocate, when the observation has more points than
+     * the landmark.
+     *
+     * @param x     the observed points' x coordinates, in the global coordinate system.
+     * @param y     the observed points' y coordinates, in the global coordinate system.
+     * @param count the number of observed points.
+     */
+    public void refine(double[] x, double[] y, int count) {
+        int common = Math.min(size, count);
+        for (int i = 0; i < common; i++) {
+            this.x[i] = (this.x[i] + x[i]) / 2;
+            this.y[i] = (this.y[i] + y[i]) / 2;
+        }
+        if (count > size) {
+            this.x = Arrays.copyOf(this.x, count);
+            this.y = Arrays.copyOf(this.y, count);
+            System.arraycopy(x, size, this.x, size, count - size);
+            System.arraycopy(y, size, this.y, size, count - size);
+            size = count;
+        }
+    }
+
+    /**
+     * Writes a landmark as its id, description and list of points, and reads
+     * it back.
+     */
+    static final class Adapter extends TypeAdapter<LandMark> {
+        @Override
+        public void write(JsonWriter out, LandMark landmark) throws IOException {
+            if (landmark == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(landmark.id);
+            out.name("description").value(landmark.description);
+            out.name("coordinates").beginArray();
+            for (int i = 0; i < landmark.size; i++) {
+                out.beginObject();
+                out.name("x").value(landmark.x[i]);
+                out.name("y").value(landmark.y[i]);
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public LandMark read(JsonReader in) throws IOException {
+            String id = null;
+            String description = null;
+            List<CloudPoint> coordinates = new ArrayList<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        id = in.nextString();
+                        break;
+                    case "description":
+                        description = in.nextString();
+                        break;
+                    case "coordinates":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            double px = 0;
+                            double py = 0;
+                            in.beginObject();
+                            while (in.hasNext()) {
+                                String name = in.nextName();
+                                if (name.equals("x")) {
+                                    px = in.nextDouble();
+                                } else if (name.equals("y")) {
+                                    py = in.nextDouble();
+                                } else {
+                                    in.skipValue();
+                                }
+                            }
+                            in.endObject();
+                            coordinates.add(new CloudPoint(px, py));
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return new LandMark(id, description, coordinates);
+        }
+    }
 }
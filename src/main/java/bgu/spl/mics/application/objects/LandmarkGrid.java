@@ -0,0 +1,353 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A spatial index over landmarks, for finding the landmarks near a point.
+ * <p>
+ * A landmark is indexed by the centroid of its points, in a uniform grid of
+ * square cells. Only cells that hold landmarks exist, in a hash map, so the
+ * grid costs nothing where the map is empty and needs no bounds. A landmark
+ * whose points change is moved to the cell of its new centroid.
+ * A range query visits only the cells the range overlaps, and a
+ * nearest-landmarks query visits rings of cells around the point, outwards,
+ * until no unvisited cell can hold anything nearer than what it found, so
+ * both take time in proportion to the landmarks around the point, not to the
+ * size of the map. A query that would visit more cells than hold landmarks
+ * (a wide range, a k of all the landmarks, or a few landmarks far apart)
+ * scans the landmark cells instead.
+ * <p>
+ * Not thread-safe: it is owned by {@link FusionSlam}.
+ */
+public class LandmarkGrid {
+    private static final class Entry {
+        private final LandMark landmark;
+        private double x;
+        private double y;
+        private long cell;
+
+        private Entry(LandMark landmark) {
+            this.landmark = landmark;
+        }
+    }
+
+    private final double cellSize;
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private final Map<String, Entry> byId = new HashMap<>();
+    private int minCellX = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * @param cellSize the side of a grid cell, in meters. Queries are fastest
+     *                 when a cell holds a few landmarks.
+     */
+    public LandmarkGrid(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * @return the number of indexed landmarks.
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * Indexes a new landmark, or moves a known one to its current centroid.
+     * A landmark without points is not indexed.
+     */
+    public void update(LandMark landmark) {
+        int count = landmark.getPointCount();
+        Entry entry = byId.get(landmark.getId());
+        if (count == 0) {
+            if (entry != null) {
+                byId.remove(landmark.getId());
+                removeFromCell(entry);
+            }
+            return;
+        }
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < count; i++) {
+            sumX += landmark.getX(i);
+            sumY += landmark.getY(i);
+        }
+        double x = sumX / count;
+        double y = sumY / count;
+        int cellX = cell(x);
+        int cellY = cell(y);
+        long cell = key(cellX, cellY);
+        if (entry == null) {
+            entry = new Entry(landmark);
+            byId.put(landmark.getId(), entry);
+        } else if (entry.cell != cell) {
+            removeFromCell(entry);
+        } else {
+            entry.x = x;
+            entry.y = y;
+            return;
+        }
+        entry.x = x;
+        entry.y = y;
+        entry.cell = cell;
+        cells.computeIfAbsent(cell, k -> new ArrayList<>(4)).add(entry);
+        minCellX = Math.min(minCellX, cellX);
+        maxCellX = Math.max(maxCellX, cellX);
+        minCellY = Math.min(minCellY, cellY);
+        maxCellY = Math.max(maxCellY, cellY);
+    }
+
+    /**
+     * @return the landmarks whose centroid is within {@code radius} of
+     *         ({@code x}, {@code y}), in no particular order.
+     */
+    public List<LandMark> within(double x, double y, double radius) {
+        List<LandMark> found = new ArrayList<>();
+        if (byId.isEmpty() || !(radius >= 0)) {
+            return found;
+        }
+        int fromX = Math.max(cell(x - radius), minCellX);
+        int toX = Math.min(cell(x + radius), maxCellX);
+        int fromY = Math.max(cell(y - radius), minCellY);
+        int toY = Math.min(cell(y + radius), maxCellY);
+        double radius2 = radius * radius;
+        if ((long) (toX - fromX + 1) * (toY - fromY + 1) > cells.size()) {
+            // the range covers more cells than there are landmark cells
+            for (List<Entry> entries : cells.values()) {
+                collect(entries, x, y, radius2, found);
+            }
+            return found;
+        }
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                List<Entry> entries = cells.get(key(cx, cy));
+                if (entries != null) {
+                    collect(entries, x, y, radius2, found);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the {@code k} landmarks whose centroids are nearest to
+     *         ({@code x}, {@code y}), nearest first.
+     */
+    public List<LandMark> nearest(double x, double y, int k) {
+        if (k <= 0 || byId.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Nearest best = new Nearest(x, y, Math.min(k, byId.size()));
+        if (k >= byId.size()) {
+            // every landmark is among the nearest
+            return scanAll(best);
+        }
+        int centerX = cell(x);
+        int centerY = cell(y);
+        // rings nearer than the first that reaches a landmark cell are empty
+        long firstRing = Math.max(
+                Math.max((long) minCellX - centerX, (long) centerX - maxCellX),
+                Math.max((long) minCellY - centerY, (long) centerY - maxCellY));
+        long lastRing = Math.max(
+                Math.max((long) centerX - minCellX, (long) maxCellX - centerX),
+                Math.max((long) centerY - minCellY, (long) maxCellY - centerY));
+        // how far the point is inside its own cell
+        double margin = Math.min(
+                Math.min(x - centerX * cellSize, (centerX + 1) * cellSize - x),
+                Math.min(y - centerY * cellSize, (centerY + 1) * cellSize - y));
+        long visited = 0;
+        for (long ring = Math.max(firstRing, 0); ring <= lastRing; ring++) {
+            // every cell of this ring is at least this far from the point
+            double reach = (ring - 1) * cellSize + margin;
+            if (best.isFull() && reach > 0 && reach * reach > best.farthest()) {
+                break;
+            }
+            long top = centerY - ring;
+            long bottom = centerY + ring;
+            long fromX = Math.max(centerX - ring, minCellX);
+            long toX = Math.min(centerX + ring, maxCellX);
+            long fromY = Math.max(top, minCellY);
+            long toY = Math.min(bottom, maxCellY);
+            visited += ringCells(fromX, toX, fromY, toY, centerX - ring, centerX + ring, top, bottom);
+            if (visited > cells.size()) {
+                // the walk reached more cells than there are landmark cells,
+                // e.g. a few landmarks far apart
+                return scanAll(new Nearest(x, y, best.k));
+            }
+            for (long cx = fromX; cx <= toX; cx++) {
+                if (cx == centerX - ring || cx == centerX + ring) {
+                    for (long cy = fromY; cy <= toY; cy++) {
+                        best.offer(cells.get(key((int) cx, (int) cy)));
+                    }
+                } else {
+                    if (top >= minCellY) {
+                        best.offer(cells.get(key((int) cx, (int) top)));
+                    }
+                    if (bottom <= maxCellY) {
+                        best.offer(cells.get(key((int) cx, (int) bottom)));
+                    }
+                }
+            }
+        }
+        return best.inOrder();
+    }
+
+    private List<LandMark> scanAll(Nearest best) {
+        for (List<Entry> entries : cells.values()) {
+            best.offer(entries);
+        }
+        return best.inOrder();
+    }
+
+    /**
+     * @return the number of cells of the ring with columns {@code left} to
+     *         {@code right} and rows {@code top} to {@code bottom} that lie
+     *         in columns {@code fromX} to {@code toX} and rows {@code fromY}
+     *         to {@code toY}.
+     */
+    private static long ringCells(long fromX, long toX, long fromY, long toY,
+                                  long left, long right, long top, long bottom) {
+        if (fromX > toX || fromY > toY) {
+            return 0;
+        }
+        long height = toY - fromY + 1;
+        long count = 0;
+        if (left >= fromX) {
+            count += height;
+        }
+        if (right <= toX && right != left) {
+            count += height;
+        }
+        long inner = Math.min(toX, right - 1) - Math.max(fromX, left + 1) + 1;
+        if (inner > 0) {
+            count += inner * ((top >= fromY ? 1 : 0) + (bottom <= toY && bottom != top ? 1 : 0));
+        }
+        return count;
+    }
+
+    /**
+     * The k landmarks nearest to a point among those offered so far, in a
+     * binary max-heap of squared distances kept in parallel arrays.
+     */
+    private static final class Nearest {
+        private final double x;
+        private final double y;
+        private final int k;
+        private final double[] distances; // squared, the farthest at 0
+        private final Entry[] entries;
+        private int size = 0;
+
+        private Nearest(double x, double y, int k) {
+            this.x = x;
+            this.y = y;
+            this.k = k;
+            this.distances = new double[k];
+            this.entries = new Entry[k];
+        }
+
+        private boolean isFull() {
+            return size == k;
+        }
+
+        private double farthest() {
+            return distances[0];
+        }
+
+        private void offer(List<Entry> offered) {
+            if (offered == null) {
+                return;
+            }
+            for (Entry entry : offered) {
+                double dx = entry.x - x;
+                double dy = entry.y - y;
+                double distance2 = dx * dx + dy * dy;
+                if (!isFull()) {
+                    siftUp(size++, distance2, entry);
+                } else if (distance2 < distances[0]) {
+                    siftDown(0, distance2, entry);
+                }
+            }
+        }
+
+        private void siftUp(int i, double distance2, Entry entry) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distance2) {
+                    break;
+                }
+                distances[i] = distances[parent];
+                entries[i] = entries[parent];
+                i = parent;
+            }
+            distances[i] = distance2;
+            entries[i] = entry;
+        }
+
+        private void siftDown(int i, double distance2, Entry entry) {
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distance2 >= distances[child]) {
+                    break;
+                }
+                distances[i] = distances[child];
+                entries[i] = entries[child];
+                i = child;
+            }
+            distances[i] = distance2;
+            entries[i] = entry;
+        }
+
+        private List<LandMark> inOrder() {
+            LandMark[] nearest = new LandMark[size];
+            while (size > 0) {
+                nearest[size - 1] = entries[0].landmark;
+                size--;
+                siftDown(0, distances[size], entries[size]);
+                entries[size] = null;
+            }
+            List<LandMark> result = new ArrayList<>(nearest.length);
+            Collections.addAll(result, nearest);
+            return result;
+        }
+    }
+
+    private static void collect(List<Entry> entries, double x, double y, double radius2, List<LandMark> found) {
+        for (Entry entry : entries) {
+            double dx = entry.x - x;
+            double dy = entry.y - y;
+            if (dx * dx + dy * dy <= radius2) {
+                found.add(entry.landmark);
+            }
+        }
+    }
+
+    private void removeFromCell(Entry entry) {
+        List<Entry> entries = cells.get(entry.cell);
+        entries.remove(entry);
+        if (entries.isEmpty()) {
+            cells.remove(entry.cell);
+        }
+    }
+
+    private int cell(double coordinate) {
+        double c = Math.floor(coordinate / cellSize);
+        return c >= Integer.MAX_VALUE ? Integer.MAX_VALUE : c <= Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) c;
+    }
+
+    private static long key(int cellX, int cellY) {
+        return (long) cellX << 32 | (cellY & 0xFFFFFFFFL);
+    }
+}
@@ -1,19 +1,217 @@
 package bgu.spl.mics.application.objects;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
  * LiDarDataBase is a singleton class responsible for managing LiDAR data.
  * It provides access to cloud point data and other relevant information for tracked objects.
+ * <p>
+ * The database also keeps track of how many of its records were already
+ * tracked, so the LiDAR workers know when there is nothing left to track.
+ * The records never change once loaded, and a record is marked tracked with
+ * an atomic bit, so the workers share the database without locking it.
+ * <p>
+ * The recording is either a JSON file, which is streamed into packed arrays
+ * on the heap, or a binary file (see {@link #convertToBinary(String, String)}),
+ * which is memory-mapped and needs no parsing at all. Which one it is is told
+ * by the file's first bytes.
+ * Records are indexed by time: finding the record of an object at a given
+ * time is a binary search over the times, then a scan of the few records
+ * sharing that time. A worker that looks up times in order should use a
+ * {@link Cursor} of its own, which continues from the time it looked up
+ * last. The record is returned as a {@link StampedCloudPoints} view of the
+ * stored points, without copying them.
  */
 public class LiDarDataBase {
+    /**
+     * The id a record carries when the LiDAR malfunctioned at its time.
+     */
+    public static final String ERROR_ID = "ERROR";
+
+    private static LiDarDataBase instance;
+
+    private final CloudPointStore store;
+    private final AtomicLongArray tracked; // a bit per record
+    private final AtomicInteger untracked = new AtomicInteger(); // records, other than errors
+
+    private LiDarDataBase(CloudPointStore store) {
+        this.store = store;
+        this.tracked = new AtomicLongArray((store.recordCount() + 63) >>> 6);
+        int trackable = 0;
+        for (int r = 0; r < store.recordCount(); r++) {
+            if (!ERROR_ID.equals(store.id(r))) {
+                trackable++;
+            }
+        }
+        untracked.set(trackable);
+    }
 
     /**
      * Returns the singleton instance of LiDarDataBase.
      *
-     * @param filePath The path to the LiDAR data file.
+     * @param filePath The path to the LiDAR data file, JSON or binary.
      * @return The singleton instance of LiDarDataBase.
      */
-    public static LiDarDataBase getInstance(String filePath) {
-        // TODO: Implement this
-        return null;
+    public static synchronized LiDarDataBase getInstance(String filePath) {
+        if (instance == null) {
+            instance = new LiDarDataBase(load(Paths.get(filePath)));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the singleton instance of LiDarDataBase, which must have been
+     * loaded by {@link #getInstance(String)}.
+     *
+     * @return The singleton instance of LiDarDataBase.
+     */
+    public static synchronized LiDarDataBase getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("LiDarDataBase was not loaded");
+        }
+        return instance;
+    }
+
+    /**
+     * Converts a JSON recording to the binary format, which the database
+     * memory-maps instead of parsing.
+     *
+     * @param jsonPath   the JSON recording to read.
+     * @param binaryPath the binary file to write.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void convertToBinary(String jsonPath, String binaryPath) throws IOException {
+        MappedCloudPointStore.write(PackedCloudPointStore.readJson(Paths.get(jsonPath)), Paths.get(binaryPath));
+    }
+
+    /**
+     * @return the number of records in the database, errors included.
+     */
+    public int getRecordCount() {
+        return store.recordCount();
+    }
+
+    /**
+     * @return a new cursor over the records, for a single worker to use.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Looks up the points of object {@code id} at {@code time} and marks the
+     * record as tracked.
+     *
+     * @return a view of the record, or null if there is none.
+     */
+    public StampedCloudPoints track(String id, int time) {
+        return track(find(id, time, store.firstAt(time)), time);
+    }
+
+    /**
+     * @return true if the LiDAR reported an error at {@code time}.
+     */
+    public boolean hasErrorAt(int time) {
+        return find(ERROR_ID, time, store.firstAt(time)) >= 0;
+    }
+
+    /**
+     * @return true if every record (other than errors) was tracked.
+     */
+    public boolean isFullyTracked() {
+        return untracked.get() <= 0;
+    }
+
+    private StampedCloudPoints track(int record, int time) {
+        if (record < 0) {
+            return null;
+        }
+        int word = record >>> 6;
+        long bit = 1L << record;
+        long bits;
+        do {
+            bits = tracked.get(word);
+        } while ((bits & bit) == 0 && !tracked.compareAndSet(word, bits, bits | bit));
+        if ((bits & bit) == 0 && !ERROR_ID.equals(store.id(record))) {
+            untracked.decrementAndGet(); // this call marked it
+        }
+        return new StampedCloudPoints(store.id(record), time, store, store.firstPoint(record), store.pointCount(record));
+    }
+
+    /**
+     * @return the first record of {@code id} at {@code time}, searching from
+     *         {@code first}, the first record of that time, or -1 if there is none.
+     */
+    private int find(String id, int time, int first) {
+        for (int r = first; r < store.recordCount() && store.time(r) == time; r++) {
+            if (store.id(r).equals(id)) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A position in the records, which one worker moves through as it looks up
+     * later times. Looking up the time it is at takes no search, and a later
+     * time is searched for forward from there, in steps that double until
+     * they pass it. An earlier time is found by a binary search.
+     * Not thread-safe: each worker uses its own.
+     */
+    public final class Cursor {
+        private int time = Integer.MIN_VALUE;
+        private int first = 0; // the first record at or after time
+
+        private Cursor() {
+        }
+
+        /**
+         * Looks up the points of object {@code id} at {@code time} and marks
+         * the record as tracked.
+         *
+         * @return a view of the record, or null if there is none.
+         */
+        public StampedCloudPoints track(String id, int time) {
+            return LiDarDataBase.this.track(find(id, time, seek(time)), time);
+        }
+
+        /**
+         * @return true if the LiDAR reported an error at {@code time}.
+         */
+        public boolean hasErrorAt(int time) {
+            return find(ERROR_ID, time, seek(time)) >= 0;
+        }
+
+        private int seek(int to) {
+            if (to < time) {
+                first = store.firstAt(to, 0, first);
+            } else if (to > time) {
+                int low = first;
+                int step = 1;
+                int high = low;
+                while (high < store.recordCount() && store.time(high) < to) {
+                    low = high + 1;
+                    high = low + step;
+                    step <<= 1;
+                }
+                first = store.firstAt(to, low, Math.min(high, store.recordCount()));
+            }
+            time = to;
+            return first;
+        }
+    }
+
+    private static CloudPointStore load(Path file) {
+        try {
+            return MappedCloudPointStore.isBinary(file)
+                    ? MappedCloudPointStore.open(file)
+                    : PackedCloudPointStore.readJson(file);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot read LiDAR data from " + file, e);
+        }
     }
 }
@@ -1,11 +1,144 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * LiDarWorkerTracker is responsible for managing a LiDAR worker.
  * It processes DetectObjectsEvents and generates TrackedObjectsEvents by using data from the LiDarDataBase.
  * Each worker tracks objects and sends observations to the FusionSlam service.
+ * <p>
+ * Objects detected at time {@code T} are reported at tick {@code T + frequency}.
+ * <p>
+ * A worker given a leaf size thins out each object's points with a
+ * {@link VoxelGrid} before reporting it, and counts the points it recorded
+ * and reported.
  */
 public class LiDarWorkerTracker {
+    private final int id;
+    private final int frequency;
+    private STATUS status = STATUS.UP;
+    private List<TrackedObject> lastTrackedObjects = Collections.emptyList();
+    private final List<TrackedObject> pending = new ArrayList<>();
+    private final VoxelGrid voxelGrid; // null if the points are reported as recorded
+    private long pointsRecorded = 0;
+    private long pointsReported = 0;
+
+    public LiDarWorkerTracker(int id, int frequency) {
+        this(id, frequency, 0);
+    }
+
+    /**
+     * @param leafSize the side of the voxels the points are thinned out by,
+     *                 in meters, or 0 to report every recorded point.
+     */
+    public LiDarWorkerTracker(int id, int frequency, double leafSize) {
+        this.id = id;
+        this.frequency = frequency;
+        this.voxelGrid = leafSize > 0 ? new VoxelGrid(leafSize) : null;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+
+    public STATUS getStatus() {
+        return status;
+    }
+
+    public void setStatus(STATUS status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the side of the voxels the points are thinned out by, or 0 if
+     *         they are not.
+     */
+    public double getLeafSize() {
+        return voxelGrid == null ? 0 : voxelGrid.getLeafSize();
+    }
+
+    /**
+     * @return the number of points the LiDAR recorded for the objects tracked so far.
+     */
+    public long getPointsRecorded() {
+        return pointsRecorded;
+    }
+
+    /**
+     * @return the number of points left of them after thinning them out.
+     */
+    public long getPointsReported() {
+        return pointsReported;
+    }
+
+    /**
+     * @return the objects the worker reported last.
+     */
+    public List<TrackedObject> getLastTrackedObjects() {
+        return lastTrackedObjects;
+    }
+
+    /**
+     * Tracks the objects of a camera frame using the points recorded in the
+     * LiDAR database, and holds them until they are due.
+     *
+     * @param frame   the objects a camera detected.
+     * @param records the worker's cursor over the LiDAR database.
+     */
+    public void track(StampedDetectedObjects frame, LiDarDataBase.Cursor records) {
+        for (DetectedObject object : frame.getDetectedObjects()) {
+            StampedCloudPoints record = records.track(object.getId(), frame.getTime());
+            if (record == null) {
+                continue;
+            }
+            List<CloudPoint> coordinates;
+            if (voxelGrid != null) {
+                coordinates = voxelGrid.downsample(record);
+            } else {
+                coordinates = new ArrayList<>(record.getPointCount());
+                for (int i = 0; i < record.getPointCount(); i++) {
+                    coordinates.add(new CloudPoint(record.getX(i), record.getY(i)));
+                }
+            }
+            pointsRecorded += record.getPointCount();
+            pointsReported += coordinates.size();
+            pending.add(new TrackedObject(object.getId(), frame.getTime(), object.getDescription(), coordinates));
+        }
+    }
+
+    /**
+     * Removes and returns the tracked objects that are due at {@code tick}.
+     *
+     * @param tick the current tick.
+     * @return the objects to report now, possibly empty.
+     */
+    public List<TrackedObject> collectDue(int tick) {
+        List<TrackedObject> due = new ArrayList<>();
+        Iterator<TrackedObject> it = pending.iterator();
+        while (it.hasNext()) {
+            TrackedObject object = it.next();
+            if (object.getTime() + frequency <= tick) {
+                due.add(object);
+                it.remove();
+            }
+        }
+        if (!due.isEmpty()) {
+            lastTrackedObjects = due;
+        }
+        return due;
+    }
 
-    // TODO: Define fields and methods.
+    /**
+     * @return true if some tracked objects are not due yet.
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
 }
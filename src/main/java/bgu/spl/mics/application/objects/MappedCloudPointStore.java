@@ -0,0 +1,252 @@
+package bgu.spl.mics.application.objects;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link CloudPointStore} read straight from a binary recording through a
+ * memory-mapped file. Opening one only reads the header and the object ids;
+ * records and points are read from the page cache when they are looked up,
+ * and the cache is shared by every run that opens the same file.
+ * <p>
+ * The binary format, all numbers little-endian:
+ * <pre>
+ * header, 64 bytes:
+ *     magic "GRLIDAR1", int version (1), int recordCount, int idCount,
+ *     int pointCount, long idTableOffset, long pointsOffset, then zeros
+ * records, from byte 64, 16 bytes each, ordered by time:
+ *     int time, int idIndex, int firstPoint, int pointCount
+ * id table, from idTableOffset, idCount times:
+ *     int length, then length bytes of UTF-8
+ * points, from pointsOffset (a multiple of 16), 16 bytes each:
+ *     double x, double y
+ * </pre>
+ * Recordings are converted from JSON with {@link LiDarDataBase#convertToBinary(String, String)}.
+ */
+final class MappedCloudPointStore extends CloudPointStore {
+    static final byte[] MAGIC = "GRLIDAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 16;
+    private static final int POINT_SIZE = 16;
+    private static final int CHUNK_SHIFT = 26; // 2^26 points, 1 GiB, per mapped chunk
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final ByteBuffer records;
+    private final ByteBuffer[] points;
+    private final String[] ids;
+    private final int recordCount;
+
+    private MappedCloudPointStore(ByteBuffer records, ByteBuffer[] points, String[] ids, int recordCount) {
+        this.records = records;
+        this.points = points;
+        this.ids = ids;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * @return true if {@code file} starts like a binary recording.
+     */
+    static boolean isBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // keep reading
+            }
+            return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    /**
+     * Opens the binary recording {@code file}.
+     *
+     * @throws IOException if the file cannot be read, is not a binary
+     *                     recording, or its header or id table do not fit
+     *                     the file (e.g. it is corrupt or truncated).
+     */
+    static MappedCloudPointStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException(file + " is not a binary LiDAR recording");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION) {
+                throw new IOException(file + " is not a binary LiDAR recording");
+            }
+            int recordCount = header.getInt();
+            int idCount = header.getInt();
+            int pointCount = header.getInt();
+            long idTableOffset = header.getLong();
+            long pointsOffset = header.getLong();
+            if (recordCount < 0 || recordCount > Integer.MAX_VALUE / RECORD_SIZE) {
+                throw corrupt(file, "record count " + recordCount);
+            }
+            if (idCount < 0 || pointCount < 0) {
+                throw corrupt(file, "id count " + idCount + " or point count " + pointCount);
+            }
+            if (idTableOffset < HEADER_SIZE + (long) recordCount * RECORD_SIZE || pointsOffset < idTableOffset
+                    || pointsOffset - idTableOffset > Integer.MAX_VALUE
+                    || pointsOffset - idTableOffset < (long) idCount * 4 || pointsOffset % POINT_SIZE != 0) {
+                throw corrupt(file, "id table at " + idTableOffset + " or points at " + pointsOffset);
+            }
+            if (pointsOffset + (long) pointCount * POINT_SIZE > size) {
+                throw corrupt(file, pointCount + " points from " + pointsOffset + " in " + size + " bytes");
+            }
+
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) recordCount * RECORD_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            ByteBuffer idTable = channel.map(FileChannel.MapMode.READ_ONLY, idTableOffset, pointsOffset - idTableOffset)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            String[] ids = new String[idCount];
+            for (int i = 0; i < idCount; i++) {
+                int length = idTable.remaining() < 4 ? -1 : idTable.getInt();
+                if (length < 0 || length > idTable.remaining()) {
+                    throw corrupt(file, "id " + i + " past the id table");
+                }
+                byte[] bytes = new byte[length];
+                idTable.get(bytes);
+                ids[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            ByteBuffer[] chunks = new ByteBuffer[(int) (((long) pointCount + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int c = 0; c < chunks.length; c++) {
+                long first = (long) c << CHUNK_SHIFT;
+                long count = Math.min(1L << CHUNK_SHIFT, pointCount - first);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, pointsOffset + first * POINT_SIZE, count * POINT_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new MappedCloudPointStore(records, chunks, ids, recordCount); // mappings outlive the channel
+        }
+    }
+
+    /**
+     * Writes {@code store} to {@code file} in the binary format.
+     */
+    static void write(CloudPointStore store, Path file) throws IOException {
+        int recordCount = store.recordCount();
+        Map<String, Integer> idIndex = new HashMap<>();
+        String[] idsInOrder = new String[recordCount];
+        long points = 0;
+        for (int r = 0; r < recordCount; r++) {
+            String id = store.id(r);
+            if (!idIndex.containsKey(id)) {
+                idsInOrder[idIndex.size()] = id;
+                idIndex.put(id, idIndex.size());
+            }
+            points += store.pointCount(r);
+        }
+        if (points > Integer.MAX_VALUE) {
+            throw new IOException("Too many points for a binary recording: " + points);
+        }
+        int pointCount = (int) points;
+        int idCount = idIndex.size();
+        byte[][] idBytes = new byte[idCount][];
+        long idTableSize = 0;
+        for (int i = 0; i < idCount; i++) {
+            idBytes[i] = idsInOrder[i].getBytes(StandardCharsets.UTF_8);
+            idTableSize += 4 + idBytes[i].length;
+        }
+        long idTableOffset = HEADER_SIZE + (long) recordCount * RECORD_SIZE;
+        long pointsOffset = (idTableOffset + idTableSize + POINT_SIZE - 1) / POINT_SIZE * POINT_SIZE;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer out = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            out.put(MAGIC).putInt(VERSION).putInt(recordCount).putInt(idCount).putInt(pointCount)
+                    .putLong(idTableOffset).putLong(pointsOffset);
+            out.put(new byte[HEADER_SIZE - out.position()]);
+
+            int nextPoint = 0;
+            for (int r = 0; r < recordCount; r++) {
+                out = ensure(channel, out, RECORD_SIZE);
+                out.putInt(store.time(r)).putInt(idIndex.get(store.id(r))).putInt(nextPoint).putInt(store.pointCount(r));
+                nextPoint += store.pointCount(r);
+            }
+            for (byte[] bytes : idBytes) {
+                out = ensure(channel, out, 4 + bytes.length);
+                out.putInt(bytes.length).put(bytes);
+            }
+            out = ensure(channel, out, POINT_SIZE);
+            out.put(new byte[(int) (pointsOffset - idTableOffset - idTableSize)]);
+            for (int r = 0; r < recordCount; r++) {
+                int first = store.firstPoint(r);
+                for (int p = 0; p < store.pointCount(r); p++) {
+                    out = ensure(channel, out, POINT_SIZE);
+                    out.putDouble(store.x(first + p)).putDouble(store.y(first + p));
+                }
+            }
+            flush(channel, out);
+        }
+    }
+
+    @Override
+    int recordCount() {
+        return recordCount;
+    }
+
+    @Override
+    int time(int record) {
+        return records.getInt(record * RECORD_SIZE);
+    }
+
+    @Override
+    String id(int record) {
+        return ids[records.getInt(record * RECORD_SIZE + 4)];
+    }
+
+    @Override
+    int firstPoint(int record) {
+        return records.getInt(record * RECORD_SIZE + 8);
+    }
+
+    @Override
+    int pointCount(int record) {
+        return records.getInt(record * RECORD_SIZE + 12);
+    }
+
+    @Override
+    double x(int point) {
+        return points[point >>> CHUNK_SHIFT].getDouble((point & CHUNK_MASK) * POINT_SIZE);
+    }
+
+    @Override
+    double y(int point) {
+        return points[point >>> CHUNK_SHIFT].getDouble((point & CHUNK_MASK) * POINT_SIZE + 8);
+    }
+
+    private static IOException corrupt(Path file, String what) {
+        return new IOException(file + " is a corrupt binary LiDAR recording: " + what);
+    }
+
+    /**
+     * @return a buffer with room for {@code size} more bytes, flushing {@code out} if it is full.
+     */
+    private static ByteBuffer ensure(FileChannel channel, ByteBuffer out, int size) throws IOException {
+        if (out.remaining() >= size) {
+            return out;
+        }
+        flush(channel, out);
+        return size <= out.capacity() ? out : ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,278 @@
+package bgu.spl.mics.application.objects;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A map of which parts of the plane are occupied, for navigation.
+ * <p>
+ * The plane is divided into square cells, and each cell holds the log-odds
+ * that it is occupied, scaled to a byte: 0 is unknown (or undecided),
+ * positive is likely occupied and negative is likely free. Each point of a
+ * scan is a hit on its own cell and a miss on every cell on the way to it
+ * from the robot (see {@link #addScan}), so walls accumulate evidence and
+ * the space in front of them is cleared.
+ * <p>
+ * The cells are kept in square tiles of {@value #TILE_SIZE} by
+ * {@value #TILE_SIZE} bytes, which are allocated only when a scan first
+ * reaches them, in a hash map. A large building therefore costs only the
+ * tiles the robot has seen.
+ * <p>
+ * {@link #write(Path)} stores the grid as the magic {@code "GROCC001"}, the
+ * cell size as a double, the tile size and the number of tiles as ints, and
+ * then each tile, in row-major tile order: its tile x and tile y as ints,
+ * followed by its cells in row-major order, run-length encoded as pairs of a
+ * run length (an unsigned short, 1 to 65535) and the cells' value (a byte).
+ * Mostly-unknown and mostly-free tiles take a few bytes each.
+ * <p>
+ * Not thread-safe: it is owned by {@link FusionSlam}.
+ */
+public class OccupancyGrid {
+    static final byte[] MAGIC = "GROCC001".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The side of a tile, in cells.
+     */
+    public static final int TILE_SIZE = 64;
+
+    // log-odds are scaled by 20: a hit is p = 0.7, a miss p = 0.4
+    private static final int HIT = 17;
+    private static final int MISS = -8;
+    private static final int MAX = 127;
+    private static final int MIN = -127;
+
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private final double cellSize;
+    private final double perMeter; // cells per meter
+    private final Map<Long, byte[]> tiles = new HashMap<>();
+    // the tile reached last, as rays mostly stay within a tile
+    private long lastKey;
+    private byte[] lastTile;
+
+    /**
+     * @param cellSize the side of a cell, in meters.
+     */
+    public OccupancyGrid(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.perMeter = 1 / cellSize;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return the number of tiles allocated so far.
+     */
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * Adds a scan taken from ({@code originX}, {@code originY}): each point's
+     * cell is hit, and the cells on the straight line to it from the origin's
+     * cell are missed.
+     *
+     * @param x     the points' x coordinates, in the global coordinate system.
+     * @param y     the points' y coordinates, in the global coordinate system.
+     * @param count the number of points.
+     */
+    public void addScan(double originX, double originY, double[] x, double[] y, int count) {
+        int fromX = cell(originX);
+        int fromY = cell(originY);
+        for (int i = 0; i < count; i++) {
+            int toX = cell(x[i]);
+            int toY = cell(y[i]);
+            traceMisses(fromX, fromY, toX, toY);
+            update(toX, toY, HIT);
+        }
+    }
+
+    /**
+     * @return the scaled log-odds that the cell holding ({@code x}, {@code y})
+     *         is occupied, 0 if it is unknown.
+     */
+    public int getValue(double x, double y) {
+        return getCell(cell(x), cell(y));
+    }
+
+    /**
+     * @return the scaled log-odds that cell ({@code cellX}, {@code cellY}) is
+     *         occupied, 0 if it is unknown.
+     */
+    public int getCell(int cellX, int cellY) {
+        byte[] tile = tiles.get(key(cellX >> TILE_SHIFT, cellY >> TILE_SHIFT));
+        return tile == null ? 0 : tile[(cellY & TILE_MASK) * TILE_SIZE + (cellX & TILE_MASK)];
+    }
+
+    /**
+     * Adds the evidence of {@code other}, which must have the same cell size,
+     * to this grid, cell by cell.
+     */
+    public void merge(OccupancyGrid other) {
+        if (other.cellSize != cellSize) {
+            throw new IllegalArgumentException("Cell sizes differ: " + other.cellSize + " and " + cellSize);
+        }
+        for (Map.Entry<Long, byte[]> e : other.tiles.entrySet()) {
+            byte[] tile = tiles.get(e.getKey());
+            if (tile == null) {
+                tiles.put(e.getKey(), e.getValue().clone());
+                continue;
+            }
+            byte[] add = e.getValue();
+            for (int i = 0; i < tile.length; i++) {
+                tile[i] = (byte) Math.max(MIN, Math.min(MAX, tile[i] + add[i]));
+            }
+        }
+    }
+
+    /**
+     * Writes the grid to {@code file}, in the format described above.
+     */
+    public void write(Path file) throws IOException {
+        List<Long> keys = new ArrayList<>(tiles.keySet());
+        // row-major: by tile y, then tile x
+        keys.sort((a, b) -> a.intValue() != b.intValue()
+                ? Integer.compare(a.intValue(), b.intValue())
+                : Integer.compare((int) (a >> 32), (int) (b >> 32)));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.write(MAGIC);
+            out.writeDouble(cellSize);
+            out.writeInt(TILE_SIZE);
+            out.writeInt(keys.size());
+            for (long key : keys) {
+                out.writeInt((int) (key >> 32));
+                out.writeInt((int) key);
+                byte[] tile = tiles.get(key);
+                int i = 0;
+                while (i < tile.length) {
+                    int run = 1;
+                    while (i + run < tile.length && tile[i + run] == tile[i] && run < 0xFFFF) {
+                        run++;
+                    }
+                    out.writeShort(run);
+                    out.writeByte(tile[i]);
+                    i += run;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a grid written by {@link #write(Path)}.
+     *
+     * @throws IOException if the file cannot be read, or is not a valid grid.
+     */
+    public static OccupancyGrid read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            byte[] magic = new byte[MAGIC.length];
+            try {
+                in.readFully(magic);
+            } catch (EOFException e) {
+                magic = null;
+            }
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException(file + " is not an occupancy grid");
+            }
+            double cellSize = in.readDouble();
+            if (!(cellSize > 0)) {
+                throw new IOException("Corrupt cell size " + cellSize);
+            }
+            OccupancyGrid grid = new OccupancyGrid(cellSize);
+            int tileSize = in.readInt();
+            if (tileSize != TILE_SIZE) {
+                throw new IOException("Unsupported tile size " + tileSize);
+            }
+            int tileCount = in.readInt();
+            if (tileCount < 0) {
+                throw new IOException("Corrupt tile count " + tileCount);
+            }
+            for (int t = 0; t < tileCount; t++) {
+                long key = key(in.readInt(), in.readInt());
+                byte[] tile = new byte[TILE_SIZE * TILE_SIZE];
+                int i = 0;
+                while (i < tile.length) {
+                    int run = in.readUnsignedShort();
+                    byte value = in.readByte();
+                    if (run == 0 || i + run > tile.length) {
+                        throw new IOException("Corrupt run in tile " + t);
+                    }
+                    Arrays.fill(tile, i, i + run, value);
+                    i += run;
+                }
+                grid.tiles.put(key, tile);
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Misses the cells on the line from ({@code fromX}, {@code fromY}) to
+     * ({@code toX}, {@code toY}), the first one included and the last one
+     * not, along Bresenham's line.
+     */
+    private void traceMisses(int fromX, int fromY, int toX, int toY) {
+        int dx = Math.abs(toX - fromX);
+        int dy = -Math.abs(toY - fromY);
+        int stepX = fromX < toX ? 1 : -1;
+        int stepY = fromY < toY ? 1 : -1;
+        int error = dx + dy;
+        int cx = fromX;
+        int cy = fromY;
+        while (cx != toX || cy != toY) {
+            update(cx, cy, MISS);
+            int e2 = 2 * error;
+            if (e2 >= dy) {
+                error += dy;
+                cx += stepX;
+            }
+            if (e2 <= dx) {
+                error += dx;
+                cy += stepY;
+            }
+        }
+    }
+
+    private void update(int cellX, int cellY, int evidence) {
+        long key = key(cellX >> TILE_SHIFT, cellY >> TILE_SHIFT);
+        byte[] tile;
+        if (lastTile != null && key == lastKey) {
+            tile = lastTile;
+        } else {
+            tile = tiles.get(key);
+            if (tile == null) {
+                tile = new byte[TILE_SIZE * TILE_SIZE];
+                tiles.put(key, tile);
+            }
+            lastKey = key;
+            lastTile = tile;
+        }
+        int i = (cellY & TILE_MASK) * TILE_SIZE + (cellX & TILE_MASK);
+        tile[i] = (byte) Math.max(MIN, Math.min(MAX, tile[i] + evidence));
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate * perMeter);
+    }
+
+    private static long key(int tileX, int tileY) {
+        return (long) tileX << 32 | (tileY & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,174 @@
+package bgu.spl.mics.application.objects;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link CloudPointStore} held on the heap, read from a JSON recording.
+ * <p>
+ * The file is read as a stream, one record at a time. The points of all the
+ * records are packed into a single array of x and y coordinates, and the
+ * records themselves are a few parallel primitive arrays, so the store takes
+ * little more memory than the coordinates themselves. The height of the
+ * points is not used, so it is not kept.
+ */
+final class PackedCloudPointStore extends CloudPointStore {
+    private final double[] coordinates; // x0, y0, x1, y1, ...
+    private final int[] times;
+    private final String[] ids;
+    private final int[] firstPoints;
+    private final int[] pointCounts;
+
+    PackedCloudPointStore(double[] coordinates, int[] times, String[] ids, int[] firstPoints, int[] pointCounts) {
+        this.coordinates = coordinates;
+        this.times = times;
+        this.ids = ids;
+        this.firstPoints = firstPoints;
+        this.pointCounts = pointCounts;
+    }
+
+    /**
+     * Reads a JSON array of {@code {time, id, cloudPoints}} records.
+     */
+    static PackedCloudPointStore readJson(Path file) throws IOException {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            Loader data = new Loader();
+            reader.beginArray();
+            while (reader.hasNext()) {
+                data.read(reader);
+            }
+            reader.endArray();
+            return data.build();
+        }
+    }
+
+    @Override
+    int recordCount() {
+        return times.length;
+    }
+
+    @Override
+    int time(int record) {
+        return times[record];
+    }
+
+    @Override
+    String id(int record) {
+        return ids[record];
+    }
+
+    @Override
+    int firstPoint(int record) {
+        return firstPoints[record];
+    }
+
+    @Override
+    int pointCount(int record) {
+        return pointCounts[record];
+    }
+
+    @Override
+    double x(int point) {
+        return coordinates[2 * point];
+    }
+
+    @Override
+    double y(int point) {
+        return coordinates[2 * point + 1];
+    }
+
+    /**
+     * Growable primitive arrays the records are read into, in file order.
+     */
+    private static final class Loader {
+        private double[] coordinates = new double[1024];
+        private int[] offsets = new int[65]; // record r's coordinates are [offsets[r], offsets[r + 1])
+        private int[] times = new int[64];
+        private String[] ids = new String[64];
+        private int records = 0;
+        private final Map<String, String> knownIds = new HashMap<>(); // one copy of every id
+
+        /**
+         * Reads one {@code {time, id, cloudPoints}} record.
+         */
+        private void read(JsonReader reader) throws IOException {
+            if (records == times.length) {
+                times = Arrays.copyOf(times, records * 2);
+                ids = Arrays.copyOf(ids, records * 2);
+                offsets = Arrays.copyOf(offsets, records * 2 + 1);
+            }
+            int length = offsets[records];
+            String id = null;
+            int time = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextString();
+                        String known = knownIds.putIfAbsent(id, id);
+                        if (known != null) {
+                            id = known;
+                        }
+                        break;
+                    case "time":
+                        time = reader.nextInt();
+                        break;
+                    case "cloudPoints":
+                        length = offsets[records]; // in case of a repeated key
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            if (length + 2 > coordinates.length) {
+                                coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+                            }
+                            reader.beginArray();
+                            coordinates[length++] = reader.nextDouble();
+                            coordinates[length++] = reader.nextDouble();
+                            while (reader.hasNext()) {
+                                reader.skipValue(); // the height
+                            }
+                            reader.endArray();
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            times[records] = time;
+            ids[records] = id;
+            offsets[++records] = length;
+        }
+
+        /**
+         * Orders the records by time. The points stay where they are, in file order.
+         */
+        private PackedCloudPointStore build() {
+            long[] keys = new long[records];
+            for (int r = 0; r < records; r++) {
+                keys[r] = (long) times[r] << 32 | r;
+            }
+            Arrays.sort(keys);
+            int[] sortedTimes = new int[records];
+            String[] sortedIds = new String[records];
+            int[] firstPoints = new int[records];
+            int[] pointCounts = new int[records];
+            for (int i = 0; i < records; i++) {
+                int r = (int) keys[i];
+                sortedTimes[i] = times[r];
+                sortedIds[i] = ids[r];
+                firstPoints[i] = offsets[r] / 2;
+                pointCounts[i] = (offsets[r + 1] - offsets[r]) / 2;
+            }
+            return new PackedCloudPointStore(Arrays.copyOf(coordinates, offsets[records]),
+                    sortedTimes, sortedIds, firstPoints, pointCounts);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The tracked objects that reached fusion before the pose of their time.
+ * <p>
+ * The objects are grouped by time, so the pose of a time takes all of its
+ * objects at once, without looking at the others. The buffer holds at most
+ * a set number of objects: one that would overflow it makes it drop the
+ * objects of its oldest time, whose pose is the least likely to still come.
+ * It counts the objects it held, handed over and dropped.
+ * <p>
+ * Not thread-safe: it is owned by {@link FusionSlam}.
+ */
+public class PendingObjects {
+    /**
+     * The number of objects a buffer holds unless told otherwise.
+     */
+    public static final int DEFAULT_LIMIT = 100_000;
+
+    private final TreeMap<Integer, List<TrackedObject>> byTime = new TreeMap<>();
+    private int limit;
+    private int held = 0;
+    private int maxHeld = 0;
+    private long drained = 0;
+    private long dropped = 0;
+
+    /**
+     * @param limit the most objects the buffer holds at once.
+     */
+    public PendingObjects(int limit) {
+        setLimit(limit);
+    }
+
+    /**
+     * @param limit the most objects the buffer holds at once. Lowering it
+     *              drops the oldest objects beyond it.
+     */
+    public void setLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        dropOverflow();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Holds {@code object} until the pose of its time arrives.
+     */
+    public void add(TrackedObject object) {
+        List<TrackedObject> objects = byTime.get(object.getTime());
+        if (objects == null) {
+            objects = new ArrayList<>();
+            byTime.put(object.getTime(), objects);
+        }
+        objects.add(object);
+        held++;
+        dropOverflow();
+        maxHeld = Math.max(maxHeld, held);
+    }
+
+    /**
+     * Hands over every object waiting for the pose of {@code time}.
+     *
+     * @return the objects, in the order they arrived, or an empty list.
+     */
+    public List<TrackedObject> take(int time) {
+        List<TrackedObject> objects = byTime.remove(time);
+        if (objects == null) {
+            return Collections.emptyList();
+        }
+        held -= objects.size();
+        drained += objects.size();
+        return objects;
+    }
+
+    /**
+     * @return true if no object is waiting.
+     */
+    public boolean isEmpty() {
+        return held == 0;
+    }
+
+    /**
+     * @return the number of objects waiting now.
+     */
+    public int getHeld() {
+        return held;
+    }
+
+    /**
+     * @return the most objects that were waiting at once.
+     */
+    public int getMaxHeld() {
+        return maxHeld;
+    }
+
+    /**
+     * @return the number of objects handed over once their pose arrived.
+     */
+    public long getDrained() {
+        return drained;
+    }
+
+    /**
+     * @return the number of objects dropped because the buffer was full.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the buffer's counts, by name.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new TreeMap<>();
+        result.put("limit", limit);
+        result.put("held", held);
+        result.put("maxHeld", maxHeld);
+        result.put("drained", drained);
+        result.put("dropped", dropped);
+        return result;
+    }
+
+    private void dropOverflow() {
+        while (held > limit) {
+            List<TrackedObject> oldest = byTime.pollFirstEntry().getValue();
+            held -= oldest.size();
+            dropped += oldest.size();
+        }
+    }
+}
@@ -5,5 +5,34 @@ package bgu.spl.mics.application.objects;
  * Includes x, y coordinates and the yaw angle relative to a global coordinate system.
  */
 public class Pose {
-    // TODO: Define fields and methods.
+    private final float x;
+    private final float y;
+    private final float yaw;
+    private final int time;
+
+    public Pose(float x, float y, float yaw, int time) {
+        this.x = x;
+        this.y = y;
+        this.yaw = yaw;
+        this.time = time;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    /**
+     * @return the orientation of the robot, in degrees.
+     */
+    public float getYaw() {
+        return yaw;
+    }
+
+    public int getTime() {
+        return time;
+    }
 }
@@ -0,0 +1,102 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The poses fusion received, by time.
+ * <p>
+ * Poses arrive one by one, so the index starts as an array indexed by tick,
+ * and grows it as long as the ticks stay dense by the same measure as
+ * {@link GPSIMU}: at most {@link GPSIMU#DENSE_SLOTS_PER_POSE} slots per pose,
+ * plus {@link GPSIMU#DENSE_SLACK}. A pose whose tick would make the array
+ * sparser than that, or a negative tick, moves every pose into a hash map by
+ * tick for good, so memory follows the number of poses and not the largest
+ * tick (e.g. for time stamps in epoch milliseconds). Of several poses of the
+ * same tick, the last one counts.
+ * <p>
+ * Not thread-safe: it is owned by {@link FusionSlam}.
+ */
+public class PoseIndex {
+    private Pose[] byTick = new Pose[64]; // null once the poses are in byTime
+    private Map<Integer, Pose> byTime;
+    private int count = 0;
+
+    /**
+     * @return the number of ticks that have a pose.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return true if the poses are kept in an array indexed by tick.
+     */
+    public boolean isDense() {
+        return byTick != null;
+    }
+
+    public void add(Pose pose) {
+        int time = pose.getTime();
+        if (byTick != null && time >= 0) {
+            if (time < byTick.length) {
+                if (byTick[time] == null) {
+                    count++;
+                }
+                byTick[time] = pose;
+                return;
+            }
+            long limit = (long) GPSIMU.DENSE_SLOTS_PER_POSE * (count + 1) + GPSIMU.DENSE_SLACK;
+            if (time < limit) {
+                Pose[] grown = new Pose[(int) Math.min(limit, Math.max(time + 1L, 2L * byTick.length))];
+                System.arraycopy(byTick, 0, grown, 0, byTick.length);
+                byTick = grown;
+                byTick[time] = pose;
+                count++;
+                return;
+            }
+        }
+        if (byTick != null) {
+            byTime = new HashMap<>();
+            for (int t = 0; t < byTick.length; t++) {
+                if (byTick[t] != null) {
+                    byTime.put(t, byTick[t]);
+                }
+            }
+            byTick = null;
+        }
+        if (byTime.put(time, pose) == null) {
+            count++;
+        }
+    }
+
+    /**
+     * @return the pose of {@code time}, or null if it has not arrived.
+     */
+    public Pose get(int time) {
+        if (byTick != null) {
+            return time >= 0 && time < byTick.length ? byTick[time] : null;
+        }
+        return byTime.get(time);
+    }
+
+    /**
+     * @return the poses, ordered by time.
+     */
+    public List<Pose> toList() {
+        List<Pose> poses = new ArrayList<>(count);
+        if (byTick != null) {
+            for (Pose pose : byTick) {
+                if (pose != null) {
+                    poses.add(pose);
+                }
+            }
+            return poses;
+        }
+        poses.addAll(new TreeMap<>(byTime).values());
+        return poses;
+    }
+}
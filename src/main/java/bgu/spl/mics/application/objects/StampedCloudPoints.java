@@ -3,7 +3,43 @@ package bgu.spl.mics.application.objects;
 /**
  * Represents a group of cloud points corresponding to a specific timestamp.
  * Used by the LiDAR system to store and process point cloud data for tracked objects.
+ * <p>
+ * A StampedCloudPoints is only a view of the points of one record in the
+ * {@link LiDarDataBase}'s store; the points are not copied. The height of
+ * the points is not used, so it is not kept.
  */
 public class StampedCloudPoints {
-    // TODO: Define fields and methods.
+    private final String id;
+    private final int time;
+    private final CloudPointStore store;
+    private final int firstPoint;
+    private final int pointCount;
+
+    StampedCloudPoints(String id, int time, CloudPointStore store, int firstPoint, int pointCount) {
+        this.id = id;
+        this.time = time;
+        this.store = store;
+        this.firstPoint = firstPoint;
+        this.pointCount = pointCount;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getTime() {
+        return time;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public double getX(int point) {
+        return store.x(firstPoint + point);
+    }
+
+    public double getY(int point) {
+        return store.y(firstPoint + point);
+    }
 }
@@ -1,10 +1,71 @@
 package bgu.spl.mics.application.objects;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Holds statistical information about the system's operation.
  * This class aggregates metrics such as the runtime of the system,
  * the number of objects detected and tracked, and the number of landmarks identified.
+ * Implements the Singleton pattern, as every service reports to the same folder.
  */
 public class StatisticalFolder {
-    // TODO: Define fields and methods for statistics tracking.
+    private static class StatisticalFolderHolder {
+        private static final StatisticalFolder instance = new StatisticalFolder();
+    }
+
+    private final AtomicInteger systemRuntime = new AtomicInteger();
+    private final AtomicInteger numDetectedObjects = new AtomicInteger();
+    private final AtomicInteger numTrackedObjects = new AtomicInteger();
+    private final AtomicInteger numLandmarks = new AtomicInteger();
+    private volatile long firstTickTime;
+
+    private StatisticalFolder() {
+    }
+
+    public static StatisticalFolder getInstance() {
+        return StatisticalFolderHolder.instance;
+    }
+
+    public int getSystemRuntime() {
+        return systemRuntime.get();
+    }
+
+    public void setSystemRuntime(int ticks) {
+        systemRuntime.set(ticks);
+    }
+
+    public int getNumDetectedObjects() {
+        return numDetectedObjects.get();
+    }
+
+    public void addDetectedObjects(int count) {
+        numDetectedObjects.addAndGet(count);
+    }
+
+    public int getNumTrackedObjects() {
+        return numTrackedObjects.get();
+    }
+
+    public void addTrackedObjects(int count) {
+        numTrackedObjects.addAndGet(count);
+    }
+
+    public int getNumLandmarks() {
+        return numLandmarks.get();
+    }
+
+    public void incrementLandmarks() {
+        numLandmarks.incrementAndGet();
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at which the first tick was sent.
+     */
+    public long getFirstTickTime() {
+        return firstTickTime;
+    }
+
+    public void setFirstTickTime(long nanoTime) {
+        firstTickTime = nanoTime;
+    }
 }
@@ -0,0 +1,76 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merges the objects tracked by all the LiDAR workers into batches, so the
+ * FusionSlam service receives one event per tick instead of one per worker.
+ * <p>
+ * Workers add the objects they report at a tick. The batch is handed to the
+ * first worker that reaches a later tick, or, if a maximum batch size is
+ * set, to the worker whose objects fill it. The objects of a worker that is
+ * still behind join the open batch of the later tick. A worker that
+ * terminates takes whatever is left, so nothing stays behind.
+ * Shared by all the LiDAR workers, so it is thread-safe.
+ */
+public class TrackedObjectsCoalescer {
+    private final int maxBatchSize;
+    private List<TrackedObject> batch = new ArrayList<>();
+    private int batchTick = 0;
+
+    /**
+     * @param maxBatchSize the number of objects that makes a batch flush
+     *                     before its tick is over, or 0 to flush only per tick.
+     */
+    public TrackedObjectsCoalescer(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Adds objects reported at {@code tick} to the current batch.
+     *
+     * @return a batch the caller must send now, or an empty list.
+     */
+    public synchronized List<TrackedObject> add(List<TrackedObject> objects, int tick) {
+        List<TrackedObject> ready = flushBefore(tick);
+        batch.addAll(objects);
+        batchTick = Math.max(batchTick, tick); // a late worker doesn't reopen an earlier tick
+        if (maxBatchSize > 0 && batch.size() >= maxBatchSize) {
+            List<TrackedObject> full = flush();
+            if (ready.isEmpty()) {
+                return full;
+            }
+            ready.addAll(full); // a late worker's objects, send them along
+        }
+        return ready;
+    }
+
+    /**
+     * Closes the batch if it holds objects of a tick before {@code tick}.
+     *
+     * @return a batch the caller must send now, or an empty list.
+     */
+    public synchronized List<TrackedObject> flushBefore(int tick) {
+        return batchTick < tick ? flush() : Collections.<TrackedObject>emptyList();
+    }
+
+    /**
+     * Closes the batch, whatever tick it belongs to.
+     *
+     * @return a batch the caller must send now, or an empty list.
+     */
+    public synchronized List<TrackedObject> flush() {
+        if (batch.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<TrackedObject> ready = batch;
+        batch = new ArrayList<>();
+        return ready;
+    }
+}
@@ -0,0 +1,124 @@
+package bgu.spl.mics.application.objects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Thins out a dense point cloud by keeping one point per voxel.
+ * <p>
+ * The plane is divided into square voxels of a given leaf size, and the
+ * points that fall into the same voxel are replaced by their centroid. The
+ * centroids are listed in the order their voxels were first reached, so
+ * clouds scanned in the same order are thinned out in the same order. Every
+ * point ends up less than {@code leafSize * sqrt(2)} away from the centroid
+ * that replaces it, so a leaf size bounds how far the cloud's shape may move.
+ * <p>
+ * The grid reuses its buffers from one cloud to the next, so it is not
+ * thread-safe: each LiDAR worker has its own.
+ */
+public class VoxelGrid {
+    private final double leafSize;
+    private final double perMeter; // voxels per meter
+    // an open-addressing table from voxel keys to voxel numbers, whose
+    // entries are valid only if stamped with the current cloud's number
+    private long[] keys = new long[256];
+    private int[] voxelOf = new int[256];
+    private int[] stamps = new int[256];
+    private int stamp = 0;
+    private double[] sumX = new double[64];
+    private double[] sumY = new double[64];
+    private int[] counts = new int[64];
+
+    /**
+     * @param leafSize the side of a voxel, in meters.
+     */
+    public VoxelGrid(double leafSize) {
+        if (!(leafSize > 0)) {
+            throw new IllegalArgumentException("leafSize must be positive: " + leafSize);
+        }
+        this.leafSize = leafSize;
+        this.perMeter = 1 / leafSize;
+    }
+
+    public double getLeafSize() {
+        return leafSize;
+    }
+
+    /**
+     * @return the centroids of the voxels the record's points fall into.
+     */
+    public List<CloudPoint> downsample(StampedCloudPoints record) {
+        int pointCount = record.getPointCount();
+        newCloud(pointCount);
+        int size = 0;
+        long lastKey = 0;
+        int voxel = -1;
+        for (int i = 0; i < pointCount; i++) {
+            double x = record.getX(i);
+            double y = record.getY(i);
+            long key = (long) (int) Math.floor(x * perMeter) << 32 | ((int) Math.floor(y * perMeter) & 0xFFFFFFFFL);
+            if (voxel < 0 || key != lastKey) { // a scan's neighbouring points tend to share a voxel
+                voxel = find(key, size);
+                if (voxel == size) {
+                    if (size == counts.length) {
+                        sumX = Arrays.copyOf(sumX, size * 2);
+                        sumY = Arrays.copyOf(sumY, size * 2);
+                        counts = Arrays.copyOf(counts, size * 2);
+                    }
+                    sumX[size] = 0;
+                    sumY[size] = 0;
+                    counts[size] = 0;
+                    size++;
+                }
+                lastKey = key;
+            }
+            sumX[voxel] += x;
+            sumY[voxel] += y;
+            counts[voxel]++;
+        }
+        List<CloudPoint> centroids = new ArrayList<>(size);
+        for (int v = 0; v < size; v++) {
+            centroids.add(new CloudPoint(sumX[v] / counts[v], sumY[v] / counts[v]));
+        }
+        return centroids;
+    }
+
+    /**
+     * Empties the table, and makes sure it can hold a voxel per point while
+     * at most half full.
+     */
+    private void newCloud(int pointCount) {
+        if (keys.length < 2 * pointCount) {
+            int capacity = Integer.highestOneBit(Math.max(2 * pointCount - 1, 1)) << 1;
+            keys = new long[capacity];
+            voxelOf = new int[capacity];
+            stamps = new int[capacity];
+            stamp = 0;
+        }
+        if (++stamp == 0) { // the stamps wrapped around: really clear them
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * @return the number of the voxel with {@code key}, which is
+     *         {@code next} if it is a new one.
+     */
+    private int find(long key, int next) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (stamps[slot] == stamp) {
+            if (keys[slot] == key) {
+                return voxelOf[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        stamps[slot] = stamp;
+        keys[slot] = key;
+        voxelOf[slot] = next;
+        return next;
+    }
+}
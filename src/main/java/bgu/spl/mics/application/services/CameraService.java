@@ -1,7 +1,14 @@
 package bgu.spl.mics.application.services;
 
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.DetectObjectsEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.objects.Camera;
+import bgu.spl.mics.application.objects.STATUS;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+import bgu.spl.mics.application.objects.StatisticalFolder;
 
 /**
  * CameraService is responsible for processing data from the camera and
@@ -11,6 +18,7 @@ import bgu.spl.mics.application.objects.Camera;
  * the system's StatisticalFolder upon sending its observations.
  */
 public class CameraService extends MicroService {
+    private final Camera camera;
 
     /**
      * Constructor for CameraService.
@@ -18,8 +26,8 @@ public class CameraService extends MicroService {
      * @param camera The Camera object that this service will use to detect objects.
      */
     public CameraService(Camera camera) {
-        super("Change_This_Name");
-        // TODO Implement this
+        super("Camera" + camera.getId());
+        this.camera = camera;
     }
 
     /**
@@ -29,6 +37,40 @@ public class CameraService extends MicroService {
      */
     @Override
     protected void initialize() {
-        // TODO Implement this
+        subscribeBroadcast(TickBroadcast.class, tick -> {
+            int now = tick.getTick();
+            String error = camera.findError(now);
+            if (error != null) {
+                camera.setStatus(STATUS.ERROR);
+                sendBroadcast(new CrashedBroadcast(getName(), error));
+                stop();
+                return;
+            }
+            StampedDetectedObjects frame = camera.detect(now);
+            if (frame != null) {
+                StatisticalFolder.getInstance().addDetectedObjects(frame.getDetectedObjects().size());
+                sendEvent(new DetectObjectsEvent(frame, getName()));
+            }
+            if (camera.isDone(now)) {
+                camera.setStatus(STATUS.DOWN);
+                sendBroadcast(new TerminatedBroadcast(getName(), CameraService.class));
+                stop();
+            }
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == TimeService.class) {
+                camera.setStatus(STATUS.DOWN);
+                stop();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> stop());
+    }
+
+    /**
+     * Terminates the service and closes the camera data it was reading.
+     */
+    private void stop() {
+        camera.close();
+        terminate();
     }
 }
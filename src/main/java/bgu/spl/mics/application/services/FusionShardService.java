@@ -0,0 +1,53 @@
+package bgu.spl.mics.application.services;
+
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.FusionShardEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.objects.FusionSlam;
+
+/**
+ * FusionShardService updates the shards of a sharded map (see
+ * {@link FusionSlam#setShards(int)}) with the poses and tracked objects the
+ * FusionSlamService sends them.
+ * <p>
+ * Each {@link FusionShardEvent} names the shard it updates, so the result
+ * does not depend on which service receives it. Which one does is up to the
+ * event's routing: all the events of a shard go to the same service, so a
+ * shard is only ever updated by one service at a time, and in the order the
+ * FusionSlamService sent its events. The services leave only once the
+ * FusionSlamService terminated, after the shards handled everything it sent.
+ */
+public class FusionShardService extends MicroService {
+
+    /**
+     * Constructor for FusionShardService.
+     *
+     * @param number The service's number, to tell the services apart.
+     */
+    public FusionShardService(int number) {
+        super("FusionSlamShard" + number);
+    }
+
+    /**
+     * Initializes the FusionShardService.
+     * Registers the service to handle FusionShardEvents, and to stop with the
+     * FusionSlamService.
+     */
+    @Override
+    protected void initialize() {
+        subscribeEvent(FusionShardEvent.class, event -> {
+            FusionSlam shard = event.getShard();
+            if (event.getPose() != null) {
+                shard.addPose(event.getPose());
+            } else {
+                shard.processTrackedObjects(event.getTrackedObjects());
+            }
+            complete(event, true);
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == FusionSlamService.class) {
+                terminate();
+            }
+        });
+    }
+}
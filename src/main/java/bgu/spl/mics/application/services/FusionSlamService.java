@@ -1,7 +1,18 @@
 package bgu.spl.mics.application.services;
 
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Future;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.FusionShardEvent;
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TrackedObjectsEvent;
 import bgu.spl.mics.application.objects.FusionSlam;
+import bgu.spl.mics.application.objects.TrackedObject;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * FusionSlamService integrates data from multiple sensors to build and update
@@ -9,16 +20,29 @@ import bgu.spl.mics.application.objects.FusionSlam;
  * 
  * This service receives TrackedObjectsEvents from LiDAR workers and PoseEvents from the PoseService,
  * transforming and updating the map with new landmarks.
+ * It terminates once every sensor service has terminated, the time is up or
+ * a sensor crashed, and then tells the TimeService to stop.
+ * <p>
+ * When the map is split into shards, the service only routes: it sends every
+ * pose to every shard's {@link FusionShardService}, and each tracked object to
+ * the shard of its landmark, in the order it received them. An event is
+ * resolved once every shard it was split among handled its part, and the
+ * service terminates (which stops the shards) only once the shards handled
+ * everything it sent them.
  */
 public class FusionSlamService extends MicroService {
+    private final FusionSlam fusionSlam;
+    private int inFlight = 0; // FusionShardEvents not handled yet
+    private boolean finishing = false;
+
     /**
      * Constructor for FusionSlamService.
      *
      * @param fusionSlam The FusionSLAM object responsible for managing the global map.
      */
     public FusionSlamService(FusionSlam fusionSlam) {
-        super("Change_This_Name");
-        // TODO Implement this
+        super("FusionSlam");
+        this.fusionSlam = fusionSlam;
     }
 
     /**
@@ -28,6 +52,101 @@ public class FusionSlamService extends MicroService {
      */
     @Override
     protected void initialize() {
-        // TODO Implement this
+        boolean sharded = !fusionSlam.getShards().isEmpty();
+        subscribeEvent(TrackedObjectsEvent.class, event -> {
+            if (sharded) {
+                route(event, event.getTrackedObjects());
+                return;
+            }
+            fusionSlam.processTrackedObjects(event.getTrackedObjects());
+            complete(event, true);
+        });
+        subscribeEvent(PoseEvent.class, event -> {
+            if (sharded) {
+                List<FusionShardEvent> parts = new ArrayList<>();
+                for (int shard = 0; shard < fusionSlam.getShards().size(); shard++) {
+                    parts.add(new FusionShardEvent(shard, fusionSlam.getShards().get(shard), event.getPose()));
+                }
+                forward(event, parts);
+                return;
+            }
+            fusionSlam.addPose(event.getPose());
+            complete(event, true);
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == TimeService.class || fusionSlam.sensorTerminated()) {
+                finish();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> {
+            fusionSlam.reportCrash(crashed.getFaultySensor(), crashed.getError());
+            finish();
+        });
+    }
+
+    /**
+     * Splits tracked objects by the shard of their landmark and sends each
+     * shard its part.
+     */
+    private void route(TrackedObjectsEvent event, List<TrackedObject> objects) {
+        List<List<TrackedObject>> byShard = new ArrayList<>();
+        for (int shard = 0; shard < fusionSlam.getShards().size(); shard++) {
+            byShard.add(null);
+        }
+        for (TrackedObject object : objects) {
+            int shard = fusionSlam.shardOf(object.getId());
+            List<TrackedObject> part = byShard.get(shard);
+            if (part == null) {
+                part = new ArrayList<>();
+                byShard.set(shard, part);
+            }
+            part.add(object);
+        }
+        List<FusionShardEvent> parts = new ArrayList<>();
+        for (int shard = 0; shard < byShard.size(); shard++) {
+            if (byShard.get(shard) != null) {
+                parts.add(new FusionShardEvent(shard, fusionSlam.getShards().get(shard), byShard.get(shard)));
+            }
+        }
+        forward(event, parts);
+    }
+
+    /**
+     * Sends the parts of {@code event} to the shards, and resolves it once
+     * they were all handled.
+     */
+    private void forward(Event<Boolean> event, List<FusionShardEvent> parts) {
+        int[] remaining = {parts.size()};
+        if (parts.isEmpty()) {
+            complete(event, true);
+        }
+        for (FusionShardEvent part : parts) {
+            Future<Boolean> handled = sendEvent(part);
+            inFlight++;
+            if (handled == null) { // no shard to handle it: nothing to wait for
+                partHandled(event, remaining);
+            } else {
+                handled.onComplete(result -> partHandled(event, remaining));
+            }
+        }
+    }
+
+    private void partHandled(Event<Boolean> event, int[] remaining) {
+        inFlight--;
+        if (--remaining[0] == 0) {
+            complete(event, true);
+        }
+        if (finishing && inFlight == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        finishing = true;
+        if (inFlight > 0) {
+            return; // finishes once the shards handled the rest
+        }
+        sendBroadcast(new TerminatedBroadcast(getName(), FusionSlamService.class));
+        terminate();
     }
 }
@@ -1,7 +1,19 @@
 package bgu.spl.mics.application.services;
 
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.DetectObjectsEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.messages.TrackedObjectsEvent;
+import bgu.spl.mics.application.objects.LiDarDataBase;
 import bgu.spl.mics.application.objects.LiDarWorkerTracker;
+import bgu.spl.mics.application.objects.STATUS;
+import bgu.spl.mics.application.objects.StatisticalFolder;
+import bgu.spl.mics.application.objects.TrackedObject;
+import bgu.spl.mics.application.objects.TrackedObjectsCoalescer;
+
+import java.util.List;
 
 /**
  * LiDarService is responsible for processing data from the LiDAR sensor and
@@ -10,8 +22,19 @@ import bgu.spl.mics.application.objects.LiDarWorkerTracker;
  * This service interacts with the LiDarWorkerTracker object to retrieve and process
  * cloud point data and updates the system's StatisticalFolder upon sending its
  * observations.
+ * <p>
+ * Workers given a {@link TrackedObjectsCoalescer} report their objects
+ * through it, so the FusionSLAM service receives one batch per tick. The
+ * batch of the last tick is sent at that tick, as no later one closes it.
  */
 public class LiDarService extends MicroService {
+    private final LiDarWorkerTracker tracker;
+    private final TrackedObjectsCoalescer coalescer; // null if the worker sends its own events
+    private LiDarDataBase database;
+    private LiDarDataBase.Cursor records; // looks up the detections' times
+    private LiDarDataBase.Cursor errors;  // looks up the ticks
+    private int currentTick = 0;
+    private boolean lastTick = false; // no later tick will close the batch
 
     /**
      * Constructor for LiDarService.
@@ -19,8 +42,20 @@ public class LiDarService extends MicroService {
      * @param LiDarWorkerTracker A LiDAR Tracker worker object that this service will use to process data.
      */
     public LiDarService(LiDarWorkerTracker LiDarWorkerTracker) {
-        super("Change_This_Name");
-        // TODO Implement this
+        this(LiDarWorkerTracker, null);
+    }
+
+    /**
+     * Constructor for LiDarService.
+     *
+     * @param LiDarWorkerTracker A LiDAR Tracker worker object that this service will use to process data.
+     * @param coalescer          The batching stage shared by all the LiDAR workers, or null
+     *                           for the worker to send its own events.
+     */
+    public LiDarService(LiDarWorkerTracker LiDarWorkerTracker, TrackedObjectsCoalescer coalescer) {
+        super("LiDarWorkerTracker" + LiDarWorkerTracker.getId());
+        this.tracker = LiDarWorkerTracker;
+        this.coalescer = coalescer;
     }
 
     /**
@@ -30,6 +65,63 @@ public class LiDarService extends MicroService {
      */
     @Override
     protected void initialize() {
-        // TODO Implement this
+        database = LiDarDataBase.getInstance();
+        records = database.cursor();
+        errors = database.cursor();
+        subscribeEvent(DetectObjectsEvent.class, event -> {
+            tracker.track(event.getDetectedObjects(), records);
+            complete(event, true);
+            sendDue();
+        });
+        subscribeBroadcast(TickBroadcast.class, tick -> {
+            currentTick = tick.getTick();
+            if (errors.hasErrorAt(currentTick)) {
+                tracker.setStatus(STATUS.ERROR);
+                sendBroadcast(new CrashedBroadcast(getName(), "Connection to LiDAR lost"));
+                terminate();
+                return;
+            }
+            if (coalescer != null) {
+                send(coalescer.flushBefore(currentTick));
+            }
+            lastTick = tick.isLast();
+            sendDue();
+            if (isDone()) {
+                tracker.setStatus(STATUS.DOWN);
+                sendBroadcast(new TerminatedBroadcast(getName(), LiDarService.class));
+                terminate();
+            }
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == TimeService.class) {
+                if (coalescer != null) {
+                    send(coalescer.flush());
+                }
+                tracker.setStatus(STATUS.DOWN);
+                terminate();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> terminate());
+    }
+
+    private void sendDue() {
+        List<TrackedObject> due = tracker.collectDue(currentTick);
+        if (!due.isEmpty()) {
+            send(coalescer == null ? due : coalescer.add(due, currentTick));
+        }
+        if (coalescer != null && (lastTick || isDone())) {
+            send(coalescer.flush()); // don't hold the last objects back until the next tick
+        }
+    }
+
+    private boolean isDone() {
+        return database.isFullyTracked() && !tracker.hasPending();
+    }
+
+    private void send(List<TrackedObject> objects) {
+        if (!objects.isEmpty()) {
+            StatisticalFolder.getInstance().addTrackedObjects(objects.size()); // counted once sent, not while batched
+            sendEvent(new TrackedObjectsEvent(objects, getName()));
+        }
     }
 }
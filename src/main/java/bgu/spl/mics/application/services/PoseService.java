@@ -1,13 +1,20 @@
 package bgu.spl.mics.application.services;
 
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.PoseEvent;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.objects.GPSIMU;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.STATUS;
 
 /**
  * PoseService is responsible for maintaining the robot's current pose (position and orientation)
  * and broadcasting PoseEvents at every tick.
  */
 public class PoseService extends MicroService {
+    private final GPSIMU gpsimu;
 
     /**
      * Constructor for PoseService.
@@ -15,8 +22,8 @@ public class PoseService extends MicroService {
      * @param gpsimu The GPSIMU object that provides the robot's pose data.
      */
     public PoseService(GPSIMU gpsimu) {
-        super("Change_This_Name");
-        // TODO Implement this
+        super("PoseService");
+        this.gpsimu = gpsimu;
     }
 
     /**
@@ -25,6 +32,25 @@ public class PoseService extends MicroService {
      */
     @Override
     protected void initialize() {
-        // TODO Implement this
+        subscribeBroadcast(TickBroadcast.class, tick -> {
+            int now = tick.getTick();
+            gpsimu.setCurrentTick(now);
+            Pose pose = gpsimu.getPose(now);
+            if (pose != null) {
+                sendEvent(new PoseEvent(pose));
+            }
+            if (gpsimu.isDone(now)) {
+                gpsimu.setStatus(STATUS.DOWN);
+                sendBroadcast(new TerminatedBroadcast(getName(), PoseService.class));
+                terminate();
+            }
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == TimeService.class) {
+                gpsimu.setStatus(STATUS.DOWN);
+                terminate();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> terminate());
     }
 }
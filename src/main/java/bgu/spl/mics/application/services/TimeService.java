@@ -1,12 +1,33 @@
 package bgu.spl.mics.application.services;
 
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.application.messages.CrashedBroadcast;
+import bgu.spl.mics.application.messages.TerminatedBroadcast;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.objects.StatisticalFolder;
 
 /**
  * TimeService acts as the global timer for the system, broadcasting TickBroadcast messages
  * at regular intervals and controlling the simulation's duration.
+ * <p>
+ * In fast-forward mode the service does not sleep between ticks. It sends the
+ * next tick as soon as every other service has handled everything sent to it
+ * during the current one, so a run takes only as long as its computation.
+ * The ticks end at the same points as in a real-time run, but within a tick
+ * the services still run concurrently: whatever depends on their interleaving
+ * (e.g. which LiDAR worker receives an event, or what was tracked in the tick
+ * of a crash) varies from run to run in both modes. Fast-forward only
+ * reproduces a real-time run's output where that output is reproducible.
+ * <p>
+ * The last tick lasts like the others: the TimeService only announces that
+ * it terminated once the last tick's work was handled (in fast-forward mode)
+ * or its time is up.
+ * The service subscribes to its own ticks, so it must run on a thread of its own.
  */
 public class TimeService extends MicroService {
+    private final int tickTime;
+    private final int duration;
+    private final boolean fastForward;
 
     /**
      * Constructor for TimeService.
@@ -15,8 +36,22 @@ public class TimeService extends MicroService {
      * @param Duration  The total number of ticks before the service terminates.
      */
     public TimeService(int TickTime, int Duration) {
-        super("Change_This_Name");
-        // TODO Implement this
+        this(TickTime, Duration, false);
+    }
+
+    /**
+     * Constructor for TimeService.
+     *
+     * @param TickTime    The duration of each tick in milliseconds, ignored in fast-forward mode.
+     * @param Duration    The total number of ticks before the service terminates.
+     * @param fastForward Whether to move to the next tick as soon as the system is idle,
+     *                    which requires the message-bus to track quiescence.
+     */
+    public TimeService(int TickTime, int Duration, boolean fastForward) {
+        super("TimeService");
+        this.tickTime = TickTime;
+        this.duration = Duration;
+        this.fastForward = fastForward;
     }
 
     /**
@@ -25,6 +60,37 @@ public class TimeService extends MicroService {
      */
     @Override
     protected void initialize() {
-        // TODO Implement this
+        subscribeBroadcast(TickBroadcast.class, tick -> {
+            try {
+                if (fastForward) {
+                    awaitQuiescence();
+                } else {
+                    Thread.sleep(tickTime);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                terminate();
+                return;
+            }
+            if (tick.isLast()) { // the last tick lasted too, so what was sent in it was handled
+                sendBroadcast(new TerminatedBroadcast(getName(), TimeService.class));
+                terminate();
+                return;
+            }
+            sendTick(tick.getTick() + 1);
+        });
+        subscribeBroadcast(TerminatedBroadcast.class, terminated -> {
+            if (terminated.getSenderType() == FusionSlamService.class) {
+                terminate();
+            }
+        });
+        subscribeBroadcast(CrashedBroadcast.class, crashed -> terminate());
+        StatisticalFolder.getInstance().setFirstTickTime(System.nanoTime());
+        sendTick(1);
+    }
+
+    private void sendTick(int tick) {
+        StatisticalFolder.getInstance().setSystemRuntime(tick);
+        sendBroadcast(new TickBroadcast(tick, tick >= duration));
     }
 }
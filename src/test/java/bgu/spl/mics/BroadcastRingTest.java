@@ -0,0 +1,183 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BroadcastRingTest {
+
+    static final class Numbered implements Broadcast {
+        final int producer;
+        final int sequence;
+
+        Numbered(int producer, int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+        }
+    }
+
+    static final class Note implements Event<Void> {
+        final int producer;
+        final int sequence;
+
+        Note(int producer, int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+        }
+    }
+
+    private static Mailbox subscribed(BroadcastRing ring, AtomicLong order) {
+        Mailbox mailbox = new BlockingMailbox(order, null, null, "subscriber");
+        mailbox.addCursor(ring.subscribe(mailbox));
+        return mailbox;
+    }
+
+    @Test
+    void everyCursorReadsEveryBroadcastOnce() {
+        AtomicLong order = new AtomicLong();
+        BroadcastRing ring = new BroadcastRing(0, order, null, null);
+        Mailbox first = subscribed(ring, order);
+        Mailbox second = subscribed(ring, order);
+        List<Broadcast> sent = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Broadcast b = new Numbered(0, i);
+            sent.add(b);
+            ring.publish(b);
+        }
+        for (Mailbox mailbox : new Mailbox[]{first, second}) {
+            for (Broadcast b : sent) {
+                assertSame(b, mailbox.tryTake());
+            }
+            assertNull(mailbox.tryTake());
+        }
+    }
+
+    @Test
+    void aLateSubscriberOnlySeesLaterBroadcasts() {
+        AtomicLong order = new AtomicLong();
+        BroadcastRing ring = new BroadcastRing(0, order, null, null);
+        ring.publish(new Numbered(0, 0));
+        Mailbox late = subscribed(ring, order);
+        assertNull(ring.subscribe(late)); // already subscribed
+        Broadcast after = new Numbered(0, 1);
+        ring.publish(after);
+        assertSame(after, late.tryTake());
+        assertNull(late.tryTake());
+    }
+
+    @Test
+    void growsInsteadOfOverwritingASlowCursor() {
+        AtomicLong order = new AtomicLong();
+        BroadcastRing ring = new BroadcastRing(0, order, null, null);
+        Mailbox fast = subscribed(ring, order);
+        Mailbox slow = subscribed(ring, order);
+        int count = 1000; // many times the initial capacity
+        for (int i = 0; i < count; i++) {
+            ring.publish(new Numbered(0, i));
+            assertEquals(i, ((Numbered) fast.tryTake()).sequence);
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, ((Numbered) slow.tryTake()).sequence);
+        }
+        assertNull(slow.tryTake());
+    }
+
+    @Test
+    void unsubscribingReportsTheUnreadBroadcasts() {
+        AtomicLong order = new AtomicLong();
+        BroadcastRing ring = new BroadcastRing(0, order, null, null);
+        Mailbox mailbox = new BlockingMailbox(order, null, null, "subscriber");
+        BroadcastRing.Cursor cursor = ring.subscribe(mailbox);
+        mailbox.addCursor(cursor);
+        for (int i = 0; i < 5; i++) {
+            ring.publish(new Numbered(0, i));
+        }
+        mailbox.tryTake();
+        assertEquals(4, ring.unsubscribe(cursor));
+        assertEquals(0, ring.unsubscribe(cursor));
+    }
+
+    @Test
+    void eventsAndBroadcastsAreTakenInTheOrderTheyWereSent() {
+        AtomicLong order = new AtomicLong();
+        BroadcastRing ticks = new BroadcastRing(0, order, null, null);
+        BroadcastRing other = new BroadcastRing(0, order, null, null);
+        Mailbox mailbox = subscribed(ticks, order);
+        mailbox.addCursor(other.subscribe(mailbox));
+        List<Message> sent = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Message m;
+            switch (i % 3) {
+                case 0:
+                    m = new Note(0, i);
+                    mailbox.offer(m);
+                    break;
+                case 1:
+                    m = new Numbered(0, i);
+                    ticks.publish((Broadcast) m);
+                    break;
+                default:
+                    m = new Numbered(1, i);
+                    other.publish((Broadcast) m);
+            }
+            sent.add(m);
+        }
+        for (Message m : sent) {
+            assertSame(m, mailbox.tryTake());
+        }
+    }
+
+    @Test
+    void concurrentSendersStayInOrderPerSender() throws Exception {
+        // each sender sends an event and then a broadcast, so the owner must
+        // take every sender's messages alternating, in order
+        for (boolean lockFree : new boolean[]{false, true}) {
+            AtomicLong order = new AtomicLong();
+            BroadcastRing ring = new BroadcastRing(0, order, null, null);
+            Mailbox mailbox = lockFree
+                    ? new MpscMailbox(order, null, null, "owner")
+                    : new BlockingMailbox(order, null, null, "owner");
+            mailbox.addCursor(ring.subscribe(mailbox));
+            int senders = 4;
+            int pairs = 10_000;
+            List<Thread> threads = new ArrayList<>();
+            for (int s = 0; s < senders; s++) {
+                int sender = s;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < pairs; i++) {
+                        mailbox.offer(new Note(sender, i));
+                        ring.publish(new Numbered(sender, i));
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            int[] next = new int[senders];
+            for (int taken = 0; taken < 2 * senders * pairs; taken++) {
+                Message m = mailbox.take();
+                if (m instanceof Note) {
+                    Note note = (Note) m;
+                    assertEquals(2 * note.sequence, next[note.producer], "event out of order");
+                    next[note.producer]++;
+                } else {
+                    Numbered b = (Numbered) m;
+                    assertEquals(2 * b.sequence + 1, next[b.producer], "broadcast out of order");
+                    next[b.producer]++;
+                }
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(mailbox.tryTake());
+            for (int s = 0; s < senders; s++) {
+                assertEquals(2 * pairs, next[s]);
+            }
+        }
+    }
+}
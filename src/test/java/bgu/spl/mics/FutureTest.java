@@ -0,0 +1,82 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FutureTest {
+
+    @Test
+    void getReturnsTheResolvedResult() throws Exception {
+        Future<String> future = new Future<>();
+        assertFalse(future.isDone());
+        assertNull(future.get(10, TimeUnit.MILLISECONDS));
+        Thread resolver = new Thread(() -> future.resolve("done"));
+        resolver.start();
+        assertEquals("done", future.get());
+        assertTrue(future.isDone());
+        future.resolve("again"); // only the first resolution counts
+        assertEquals("done", future.get(0, TimeUnit.SECONDS));
+        resolver.join();
+    }
+
+    @Test
+    void callbacksRunOnceResolved() {
+        Future<Integer> future = new Future<>();
+        List<Integer> seen = new ArrayList<>();
+        future.onComplete(seen::add);
+        Future<Void> accepted = future.thenAccept(seen::add);
+        Future<String> mapped = future.thenApply(value -> "#" + value);
+        assertTrue(seen.isEmpty());
+        future.resolve(7);
+        assertEquals(2, seen.size());
+        assertTrue(accepted.isDone());
+        assertEquals("#7", mapped.get());
+        future.onComplete(seen::add); // already resolved: runs right away
+        assertEquals(3, seen.size());
+    }
+
+    @Test
+    void aThrowingCallbackFailsTheDerivedFuture() {
+        Future<Integer> future = new Future<>();
+        IllegalStateException thrown = new IllegalStateException("boom");
+        Future<Integer> failed = future.thenApply(value -> {
+            throw thrown;
+        });
+        boolean[] called = {false};
+        Future<String> downstream = failed.thenApply(value -> {
+            called[0] = true;
+            return "unreachable";
+        });
+        Future<Void> accepted = future.thenAccept(value -> {
+            throw thrown;
+        });
+        future.resolve(1);
+        assertNull(future.getFailure());
+        assertTrue(failed.isDone());
+        assertNull(failed.get());
+        assertSame(thrown, failed.getFailure());
+        assertFalse(called[0]);
+        assertSame(thrown, downstream.getFailure());
+        assertSame(thrown, accepted.getFailure());
+    }
+
+    @Test
+    void aNullResultIsNotAFailure() {
+        Future<Integer> future = new Future<>();
+        Future<Object> mapped = future.thenApply(value -> null);
+        assertNull(mapped.getFailure());
+        future.resolve(1);
+        assertTrue(mapped.isDone());
+        assertNull(mapped.get());
+        assertNull(mapped.getFailure());
+    }
+}
@@ -0,0 +1,187 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MailboxTest {
+
+    static final class Numbered implements Message {
+        final int producer;
+        final int sequence;
+
+        Numbered(int producer, int sequence) {
+            this.producer = producer;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final List<Function<AtomicLong, Mailbox>> MAILBOXES = Arrays.asList(
+            order -> new BlockingMailbox(order, null, null, "blocking"),
+            order -> new MpscMailbox(order, null, null, "mpsc"));
+
+    @Test
+    void takesEventsInTheOrderTheyWereQueued() {
+        for (Function<AtomicLong, Mailbox> factory : MAILBOXES) {
+            Mailbox mailbox = factory.apply(new AtomicLong());
+            assertNull(mailbox.tryTake());
+            assertTrue(mailbox.isEmpty());
+            for (int i = 0; i < 1000; i++) {
+                mailbox.offer(new Numbered(0, i));
+            }
+            assertTrue(mailbox.hasMessages());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, ((Numbered) mailbox.tryTake()).sequence);
+            }
+            assertNull(mailbox.tryTake());
+            assertFalse(mailbox.hasMessages());
+        }
+    }
+
+    static final class Tick implements Broadcast {
+    }
+
+    @Test
+    void remembersTheTypeOfTheMessageTakenLast() {
+        for (Function<AtomicLong, Mailbox> factory : MAILBOXES) {
+            AtomicLong order = new AtomicLong();
+            Mailbox mailbox = factory.apply(order);
+            BroadcastRing ring = new BroadcastRing(7, order, null, null);
+            mailbox.addCursor(ring.subscribe(mailbox));
+            assertEquals(-1, mailbox.takenType());
+            mailbox.offer(new Numbered(0, 0), 3);
+            ring.publish(new Tick());
+            mailbox.offer(new Numbered(0, 1));
+            mailbox.tryTake();
+            assertEquals(3, mailbox.takenType());
+            mailbox.tryTake();
+            assertEquals(7, mailbox.takenType());
+            mailbox.tryTake();
+            assertEquals(MessageTypes.idOf(Numbered.class), mailbox.takenType());
+        }
+    }
+
+    @Test
+    void takeWaitsForADelivery() throws Exception {
+        for (Function<AtomicLong, Mailbox> factory : MAILBOXES) {
+            Mailbox mailbox = factory.apply(new AtomicLong());
+            AtomicReference<Message> taken = new AtomicReference<>();
+            Thread owner = new Thread(() -> {
+                try {
+                    taken.set(mailbox.take());
+                } catch (InterruptedException ignored) {
+                }
+            });
+            owner.start();
+            Thread.sleep(50); // let the owner block
+            Message sent = new Numbered(0, 0);
+            mailbox.offer(sent);
+            owner.join(5000);
+            assertFalse(owner.isAlive());
+            assertSame(sent, taken.get());
+        }
+    }
+
+    @Test
+    void runsTheActivationInsteadOfWaking() {
+        for (Function<AtomicLong, Mailbox> factory : MAILBOXES) {
+            Mailbox mailbox = factory.apply(new AtomicLong());
+            int[] activations = {0};
+            mailbox.activateWith(() -> activations[0]++);
+            mailbox.offer(new Numbered(0, 0));
+            mailbox.offer(new Numbered(0, 1));
+            assertEquals(2, activations[0]);
+            assertEquals(0, ((Numbered) mailbox.tryTake()).sequence);
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseNothingAndKeepTheirOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        for (Function<AtomicLong, Mailbox> factory : MAILBOXES) {
+            Mailbox mailbox = factory.apply(new AtomicLong());
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        mailbox.offer(new Numbered(producer, i));
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            int[] next = new int[producers];
+            start.countDown();
+            for (int received = 0; received < producers * perProducer; received++) {
+                Numbered m = (Numbered) mailbox.take();
+                assertEquals(next[m.producer], m.sequence, "out of order from producer " + m.producer);
+                next[m.producer]++;
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertNull(mailbox.tryTake());
+            for (int p = 0; p < producers; p++) {
+                assertEquals(perProducer, next[p]);
+            }
+        }
+    }
+
+    @Test
+    void stampsFollowTheQueueUnderContention() throws Exception {
+        // the order numbers are taken atomically with queueing, so the owner
+        // must see them strictly increasing whatever the interleaving
+        for (Function<AtomicLong, Mailbox> factory : MAILBOXES) {
+            AtomicLong order = new AtomicLong();
+            Mailbox mailbox = factory.apply(order);
+            int producers = 4;
+            int perProducer = 20_000;
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        mailbox.offer(new Numbered(producer, i));
+                        order.getAndIncrement(); // other mailboxes and rings take numbers too
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            long last = -1;
+            for (int received = 0; received < producers * perProducer; received++) {
+                while (mailbox.peekOrder() < 0) {
+                    mailbox.await();
+                }
+                long stamp = mailbox.peekOrder();
+                assertTrue(stamp > last, "stamp " + stamp + " after " + last);
+                last = stamp;
+                mailbox.tryTake();
+            }
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package bgu.spl.mics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuiescenceTest {
+
+    static final class Ping implements Event<Void> {
+    }
+
+    static final class Tick implements Broadcast {
+    }
+
+    /**
+     * Starts waiting for quiescence on {@code own}'s behalf.
+     *
+     * @return a latch that opens once the wait returned.
+     */
+    private static CountDownLatch awaitOn(Quiescence quiescence, Mailbox own) {
+        CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                quiescence.await(own);
+                done.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.setDaemon(true);
+        waiter.start();
+        return done;
+    }
+
+    @Test
+    void waitsUntilTheOthersHandledTheirEvents() throws Exception {
+        AtomicLong order = new AtomicLong();
+        Quiescence quiescence = new Quiescence();
+        Mailbox own = new BlockingMailbox(order, quiescence, null, "own");
+        Mailbox other = new MpscMailbox(order, quiescence, null, "other");
+        other.offer(new Ping());
+        CountDownLatch done = awaitOn(quiescence, own);
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS), "returned with an event queued");
+        assertNotNull(other.tryTake());
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS), "returned while the event was handled");
+        assertNull(other.tryTake()); // asking for the next one releases the last
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void ignoresTheWaitersOwnMessages() throws Exception {
+        AtomicLong order = new AtomicLong();
+        Quiescence quiescence = new Quiescence();
+        Mailbox own = new BlockingMailbox(order, quiescence, null, "own");
+        BroadcastRing ring = new BroadcastRing(0, order, quiescence, null);
+        own.addCursor(ring.subscribe(own));
+        own.offer(new Ping());
+        ring.publish(new Tick());
+        assertTrue(awaitOn(quiescence, own).await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void countsUnreadBroadcastsAndClosedMailboxes() throws Exception {
+        AtomicLong order = new AtomicLong();
+        Quiescence quiescence = new Quiescence();
+        Mailbox own = new BlockingMailbox(order, quiescence, null, "own");
+        Mailbox reader = new BlockingMailbox(order, quiescence, null, "reader");
+        Mailbox leaver = new BlockingMailbox(order, quiescence, null, "leaver");
+        BroadcastRing ring = new BroadcastRing(0, order, quiescence, null);
+        reader.addCursor(ring.subscribe(reader));
+        leaver.addCursor(ring.subscribe(leaver));
+        ring.publish(new Tick());
+        CountDownLatch done = awaitOn(quiescence, own);
+        reader.tryTake();
+        reader.tryTake();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS), "returned with a broadcast unread");
+        leaver.close(); // its unread broadcast counts as handled
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
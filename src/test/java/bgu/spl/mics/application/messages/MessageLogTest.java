@@ -0,0 +1,136 @@
+package bgu.spl.mics.application.messages;
+
+import bgu.spl.mics.Message;
+import bgu.spl.mics.application.objects.CloudPoint;
+import bgu.spl.mics.application.objects.DetectedObject;
+import bgu.spl.mics.application.objects.Pose;
+import bgu.spl.mics.application.objects.StampedDetectedObjects;
+import bgu.spl.mics.application.objects.TrackedObject;
+import bgu.spl.mics.application.services.LiDarService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageLogTest {
+
+    @TempDir
+    Path dir;
+
+    private Path recorded(Message... messages) throws IOException {
+        Path file = dir.resolve("bus.grbus");
+        try (MessageLog.Recorder recorder = new MessageLog.Recorder(file)) {
+            for (Message message : messages) {
+                recorder.record(message, "sender");
+            }
+            assertEquals(messages.length, recorder.getEntries());
+        }
+        return file;
+    }
+
+    @Test
+    void readsBackWhatItRecorded() throws IOException {
+        List<CloudPoint> points = Arrays.asList(new CloudPoint(1.25, -2), new CloudPoint(0.1, 3.5));
+        Path file = recorded(
+                new TickBroadcast(300),
+                new DetectObjectsEvent(new StampedDetectedObjects(299, Arrays.asList(
+                        new DetectedObject("Wall_1", "Wall"), new DetectedObject("Wall_2", "Wall"))), "Camera1"),
+                new TrackedObjectsEvent(Collections.singletonList(
+                        new TrackedObject("Wall_1", 299, "Wall", points)), "LiDarWorkerTracker1"),
+                new PoseEvent(new Pose(1.5f, -0.25f, 90f, 300)),
+                new CrashedBroadcast("Camera1", "lens cracked"),
+                new TerminatedBroadcast("LiDarWorkerTracker1", LiDarService.class),
+                new TerminatedBroadcast("TimeService", null));
+        try (MessageLog.Reader reader = new MessageLog.Reader(file)) {
+            MessageLog.Entry tick = reader.next();
+            assertEquals(MessageLog.Kind.TICK, tick.getKind());
+            assertEquals(300, tick.getTick());
+            assertEquals("sender", tick.getSource());
+            assertEquals(300, ((TickBroadcast) tick.getMessage()).getTick());
+
+            MessageLog.Entry detect = reader.next();
+            assertEquals(300, detect.getTick()); // stamped with the tick before it
+            DetectObjectsEvent detected = (DetectObjectsEvent) detect.getMessage();
+            assertEquals("Camera1", detected.getSenderName());
+            assertEquals(299, detected.getDetectedObjects().getTime());
+            List<DetectedObject> objects = detected.getDetectedObjects().getDetectedObjects();
+            assertEquals(2, objects.size());
+            assertEquals("Wall_2", objects.get(1).getId());
+            assertEquals("Wall", objects.get(1).getDescription());
+
+            TrackedObjectsEvent tracked = (TrackedObjectsEvent) reader.next().getMessage();
+            assertEquals("LiDarWorkerTracker1", tracked.getSenderName());
+            TrackedObject object = tracked.getTrackedObjects().get(0);
+            assertEquals("Wall_1", object.getId());
+            assertEquals(299, object.getTime());
+            assertEquals(2, object.getCoordinates().size());
+            assertEquals(1.25, object.getCoordinates().get(0).getX());
+            assertEquals(3.5, object.getCoordinates().get(1).getY());
+
+            Pose pose = ((PoseEvent) reader.next().getMessage()).getPose();
+            assertEquals(300, pose.getTime());
+            assertEquals(-0.25f, pose.getY());
+            assertEquals(90f, pose.getYaw());
+
+            CrashedBroadcast crashed = (CrashedBroadcast) reader.next().getMessage();
+            assertEquals("Camera1", crashed.getFaultySensor());
+            assertEquals("lens cracked", crashed.getError());
+
+            TerminatedBroadcast terminated = (TerminatedBroadcast) reader.next().getMessage();
+            assertEquals("LiDarWorkerTracker1", terminated.getSenderName());
+            assertSame(LiDarService.class, terminated.getSenderType());
+            assertNull(((TerminatedBroadcast) reader.next().getMessage()).getSenderType());
+
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void writesARepeatedStringOnlyOnce() throws IOException {
+        String id = "a_rather_long_landmark_identifier";
+        Message detect = new DetectObjectsEvent(new StampedDetectedObjects(1,
+                Collections.singletonList(new DetectedObject(id, id))), "Camera1");
+        long once = Files.size(recorded(detect));
+        long twice = Files.size(recorded(detect, detect));
+        assertTrue(twice - once < id.length());
+    }
+
+    @Test
+    void recordsUnknownMessagesByClassName() throws IOException {
+        Path file = recorded(new Message() { });
+        try (MessageLog.Reader reader = new MessageLog.Reader(file)) {
+            MessageLog.Entry entry = reader.next();
+            assertEquals(MessageLog.Kind.OTHER, entry.getKind());
+            assertNull(entry.getMessage());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void rejectsOtherFilesAndUnknownKinds() throws IOException {
+        Path other = dir.resolve("other.bin");
+        Files.write(other, "GRBUS0".getBytes("US-ASCII"));
+        assertThrows(IOException.class, () -> new MessageLog.Reader(other));
+
+        byte[] log = Files.readAllBytes(recorded(new TickBroadcast(1)));
+        byte[] corrupt = Arrays.copyOf(log, log.length + 1);
+        corrupt[log.length] = (byte) MessageLog.Kind.values().length;
+        Path file = dir.resolve("corrupt.grbus");
+        Files.write(file, corrupt);
+        try (MessageLog.Reader reader = new MessageLog.Reader(file)) {
+            reader.next();
+            assertThrows(IOException.class, reader::next);
+        }
+    }
+}
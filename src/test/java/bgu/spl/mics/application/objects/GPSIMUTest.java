@@ -0,0 +1,77 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GPSIMUTest {
+
+    private static void assertPose(float x, float y, float yaw, int time, Pose pose) {
+        assertEquals(time, pose.getTime());
+        assertEquals(x, pose.getX(), 1e-5);
+        assertEquals(y, pose.getY(), 1e-5);
+        assertEquals(yaw, pose.getYaw(), 1e-5);
+    }
+
+    @Test
+    void findsRecordedPosesOnly() {
+        GPSIMU gps = new GPSIMU(Arrays.asList(new Pose(1, 1, 0, 2), new Pose(3, 3, 0, 4)));
+        assertPose(1, 1, 0, 2, gps.getPose(2));
+        assertNull(gps.getPose(3));
+        assertNull(gps.getPose(1));
+        assertNull(gps.getPose(5));
+        assertFalse(gps.isDone(4));
+        assertTrue(gps.isDone(5));
+    }
+
+    @Test
+    void interpolatesAlongTheShorterTurn() {
+        List<Pose> poses = Arrays.asList(new Pose(0, 0, 170, 10), new Pose(4, -8, -170, 14));
+        GPSIMU gps = new GPSIMU(poses, true);
+        assertPose(1, -2, 175, 11, gps.getPose(11));
+        assertPose(2, -4, 180, 12, gps.getPose(12));
+        assertNull(gps.getPose(15));
+        assertEquals(2, gps.getPoseList().size());
+    }
+
+    @Test
+    void searchesSparseTicksLikeDenseOnes() {
+        List<Pose> dense = new ArrayList<>();
+        List<Pose> sparse = new ArrayList<>();
+        int base = 1_700_000_000;
+        for (int i = 0; i < 20; i++) {
+            float yaw = (i * 37) % 360 - 180;
+            dense.add(new Pose(i * 1.5f, -i, yaw, 3 * i));
+            sparse.add(new Pose(i * 1.5f, -i, yaw, base + 3 * i * 1000));
+        }
+        // the sparse ticks are 1000 times further apart, so compare at matching fractions
+        GPSIMU denseGps = new GPSIMU(dense, true);
+        GPSIMU sparseGps = new GPSIMU(sparse, true);
+        for (int i = 0; i < 3 * 19; i++) {
+            Pose expected = denseGps.getPose(i);
+            Pose found = sparseGps.getPose(base + i * 1000);
+            assertPose(expected.getX(), expected.getY(), expected.getYaw(), base + i * 1000, found);
+        }
+        assertNull(sparseGps.getPose(base - 1));
+        assertTrue(sparseGps.isDone(base + 3 * 19 * 1000 + 1));
+        assertEquals(20, sparseGps.getPoseList().size());
+    }
+
+    @Test
+    void theLastPoseOfATickCounts() {
+        int far = 2_000_000_000;
+        for (List<Pose> poses : Arrays.asList(
+                Arrays.asList(new Pose(1, 1, 1, 5), new Pose(2, 2, 2, 5)),
+                Arrays.asList(new Pose(1, 1, 1, 5), new Pose(2, 2, 2, 5), new Pose(0, 0, 0, far)))) {
+            GPSIMU gps = new GPSIMU(poses);
+            assertPose(2, 2, 2, 5, gps.getPose(5));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LandmarkGridTest {
+
+    private static LandMark at(String id, double x, double y) {
+        return new LandMark(id, id, new double[]{x}, new double[]{y}, 1);
+    }
+
+    private static double distance2(LandMark landmark, double x, double y) {
+        double dx = landmark.getX(0) - x;
+        double dy = landmark.getY(0) - y;
+        return dx * dx + dy * dy;
+    }
+
+    private static Set<String> ids(List<LandMark> landmarks) {
+        Set<String> ids = new HashSet<>();
+        for (LandMark landmark : landmarks) {
+            ids.add(landmark.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void answersLikeALinearScan() {
+        Random random = new Random(7);
+        LandmarkGrid grid = new LandmarkGrid(2);
+        List<LandMark> all = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            LandMark landmark = at("L" + i, random.nextGaussian() * 40, random.nextGaussian() * 40);
+            all.add(landmark);
+            grid.update(landmark);
+        }
+        for (int query = 0; query < 200; query++) {
+            double x = random.nextGaussian() * 60;
+            double y = random.nextGaussian() * 60;
+            double radius = random.nextDouble() * 30;
+            Set<String> expected = new HashSet<>();
+            for (LandMark landmark : all) {
+                if (distance2(landmark, x, y) <= radius * radius) {
+                    expected.add(landmark.getId());
+                }
+            }
+            assertEquals(expected, ids(grid.within(x, y, radius)));
+
+            int k = 1 + random.nextInt(query % 10 == 0 ? 400 : 12);
+            List<LandMark> sorted = new ArrayList<>(all);
+            sorted.sort(Comparator.comparingDouble(landmark -> distance2(landmark, x, y)));
+            List<LandMark> nearest = grid.nearest(x, y, k);
+            assertEquals(Math.min(k, all.size()), nearest.size());
+            for (int i = 0; i < nearest.size(); i++) {
+                assertEquals(distance2(sorted.get(i), x, y), distance2(nearest.get(i), x, y), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void movesALandmarkWithItsPoints() {
+        LandmarkGrid grid = new LandmarkGrid(1);
+        LandMark landmark = at("a", 0.5, 0.5);
+        grid.update(landmark);
+        landmark.refine(new double[]{10.5}, new double[]{10.5}, 1);
+        grid.update(landmark);
+        assertEquals(1, grid.size());
+        assertTrue(grid.within(0.5, 0.5, 1).isEmpty());
+        assertEquals(1, grid.within(5.5, 5.5, 0.1).size()); // refining averages the points
+    }
+
+    @Test
+    void farApartLandmarksDoNotWalkTheWholeBox() {
+        LandmarkGrid grid = new LandmarkGrid(0.5);
+        grid.update(at("here", 0, 0));
+        grid.update(at("there", 200_000, 200_000));
+        List<LandMark> nearest = assertTimeoutPreemptively(Duration.ofSeconds(2),
+                () -> grid.nearest(100_000, 0, 3));
+        assertEquals(2, nearest.size());
+        assertEquals("here", nearest.get(0).getId());
+        assertEquals("here", grid.nearest(1, 1, 1).get(0).getId());
+    }
+}
@@ -0,0 +1,162 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedCloudPointStoreTest {
+    // header field offsets, see MappedCloudPointStore
+    private static final int RECORD_COUNT = 12;
+    private static final int ID_COUNT = 16;
+    private static final int POINT_COUNT = 20;
+    private static final int ID_TABLE_OFFSET = 24;
+    private static final int POINTS_OFFSET = 32;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Three records of two objects, with 2, 0 and 3 points.
+     */
+    private static class Sample extends CloudPointStore {
+        private final int[] times = {1, 1, 4};
+        private final String[] ids = {"Wall_1", "Chair", "Wall_1"};
+        private final int[] first = {0, 2, 2};
+        private final int[] counts = {2, 0, 3};
+
+        @Override
+        int recordCount() {
+            return times.length;
+        }
+
+        @Override
+        int time(int record) {
+            return times[record];
+        }
+
+        @Override
+        String id(int record) {
+            return ids[record];
+        }
+
+        @Override
+        int firstPoint(int record) {
+            return first[record];
+        }
+
+        @Override
+        int pointCount(int record) {
+            return counts[record];
+        }
+
+        @Override
+        double x(int point) {
+            return point * 1.5;
+        }
+
+        @Override
+        double y(int point) {
+            return -point;
+        }
+    }
+
+    private Path written() throws IOException {
+        Path file = dir.resolve("lidar.bin");
+        MappedCloudPointStore.write(new Sample(), file);
+        return file;
+    }
+
+    private void assertCorrupt(byte[] content) throws IOException {
+        Path file = dir.resolve("corrupt.bin");
+        Files.write(file, content);
+        assertThrows(IOException.class, () -> MappedCloudPointStore.open(file));
+    }
+
+    private static byte[] withInt(byte[] content, int offset, int value) {
+        byte[] copy = content.clone();
+        ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        return copy;
+    }
+
+    private static byte[] withLong(byte[] content, int offset, long value) {
+        byte[] copy = content.clone();
+        ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putLong(offset, value);
+        return copy;
+    }
+
+    @Test
+    void readsBackWhatItWrote() throws IOException {
+        Path file = written();
+        assertTrue(MappedCloudPointStore.isBinary(file));
+        Sample sample = new Sample();
+        MappedCloudPointStore store = MappedCloudPointStore.open(file);
+        assertEquals(sample.recordCount(), store.recordCount());
+        for (int r = 0; r < sample.recordCount(); r++) {
+            assertEquals(sample.time(r), store.time(r));
+            assertEquals(sample.id(r), store.id(r));
+            assertEquals(sample.pointCount(r), store.pointCount(r));
+            for (int p = 0; p < sample.pointCount(r); p++) {
+                assertEquals(sample.x(sample.firstPoint(r) + p), store.x(store.firstPoint(r) + p));
+                assertEquals(sample.y(sample.firstPoint(r) + p), store.y(store.firstPoint(r) + p));
+            }
+        }
+    }
+
+    @Test
+    void rejectsOtherAndShortFiles() throws IOException {
+        Path json = dir.resolve("lidar.json");
+        Files.write(json, "{\"cloudPoints\": []}".getBytes("UTF-8"));
+        assertFalse(MappedCloudPointStore.isBinary(json));
+        assertThrows(IOException.class, () -> MappedCloudPointStore.open(json));
+        byte[] content = Files.readAllBytes(written());
+        assertCorrupt(Arrays.copyOf(content, 40)); // not even a header
+        assertCorrupt(Arrays.copyOf(content, content.length - 8)); // truncated points
+    }
+
+    @Test
+    void rejectsACorruptHeader() throws IOException {
+        byte[] content = Files.readAllBytes(written());
+        assertCorrupt(withInt(content, RECORD_COUNT, -1));
+        assertCorrupt(withInt(content, RECORD_COUNT, Integer.MAX_VALUE));
+        assertCorrupt(withInt(content, ID_COUNT, -1));
+        assertCorrupt(withInt(content, ID_COUNT, 1000));
+        assertCorrupt(withInt(content, POINT_COUNT, -1));
+        assertCorrupt(withInt(content, POINT_COUNT, 1000));
+        assertCorrupt(withLong(content, ID_TABLE_OFFSET, 8));
+        assertCorrupt(withLong(content, ID_TABLE_OFFSET, Long.MAX_VALUE));
+        assertCorrupt(withLong(content, POINTS_OFFSET, -16));
+        assertCorrupt(withLong(content, POINTS_OFFSET, 1L << 40));
+    }
+
+    @Test
+    void rejectsAnIdPastTheIdTable() throws IOException {
+        byte[] content = Files.readAllBytes(written());
+        int idTable = (int) ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN).getLong(ID_TABLE_OFFSET);
+        assertCorrupt(withInt(content, idTable, 1 << 20));
+        assertCorrupt(withInt(content, idTable, -3));
+    }
+
+    @Test
+    void refusesToWriteMorePointsThanAnIntCounts() {
+        CloudPointStore huge = new Sample() {
+            @Override
+            int pointCount(int record) {
+                return Integer.MAX_VALUE / 2;
+            }
+        };
+        Path file = dir.resolve("huge.bin");
+        assertThrows(IOException.class, () -> MappedCloudPointStore.write(huge, file));
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,101 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OccupancyGridTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] header(double cellSize, int tileSize, int tileCount) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(OccupancyGrid.MAGIC);
+            out.writeDouble(cellSize);
+            out.writeInt(tileSize);
+            out.writeInt(tileCount);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void assertRejected(byte[] content) throws IOException {
+        Path file = dir.resolve("corrupt.grocc");
+        Files.write(file, content);
+        assertThrows(IOException.class, () -> OccupancyGrid.read(file));
+    }
+
+    @Test
+    void hitsTheEndAndMissesTheWay() {
+        OccupancyGrid grid = new OccupancyGrid(1);
+        grid.addScan(0.5, 0.5, new double[]{5.5}, new double[]{0.5}, 1);
+        assertEquals(17, grid.getValue(5.5, 0.5));
+        assertEquals(-8, grid.getValue(2.5, 0.5));
+        assertEquals(0, grid.getValue(6.5, 0.5));
+        assertEquals(1, grid.getTileCount());
+    }
+
+    @Test
+    void readsBackWhatItWrote() throws IOException {
+        Random random = new Random(42);
+        OccupancyGrid grid = new OccupancyGrid(0.1);
+        double[] x = new double[200];
+        double[] y = new double[200];
+        for (int scan = 0; scan < 20; scan++) {
+            // scans from around the origin, so tiles of every sign are allocated
+            double originX = random.nextGaussian() * 5;
+            double originY = random.nextGaussian() * 5;
+            for (int i = 0; i < x.length; i++) {
+                double angle = 2 * Math.PI * i / x.length;
+                double range = 3 + random.nextDouble() * 8;
+                x[i] = originX + range * Math.cos(angle);
+                y[i] = originY + range * Math.sin(angle);
+            }
+            grid.addScan(originX, originY, x, y, x.length);
+        }
+        Path file = dir.resolve("grid.grocc");
+        grid.write(file);
+        OccupancyGrid read = OccupancyGrid.read(file);
+        assertEquals(grid.getCellSize(), read.getCellSize());
+        assertEquals(grid.getTileCount(), read.getTileCount());
+        int extent = 20 * OccupancyGrid.TILE_SIZE;
+        for (int cy = -extent; cy < extent; cy++) {
+            for (int cx = -extent; cx < extent; cx++) {
+                if (read.getCell(cx, cy) != grid.getCell(cx, cy)) {
+                    assertEquals(grid.getCell(cx, cy), read.getCell(cx, cy), "cell (" + cx + ", " + cy + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsACorruptCellSize() throws IOException {
+        assertRejected(header(0, OccupancyGrid.TILE_SIZE, 0));
+        assertRejected(header(-0.1, OccupancyGrid.TILE_SIZE, 0));
+        assertRejected(header(Double.NaN, OccupancyGrid.TILE_SIZE, 0));
+    }
+
+    @Test
+    void rejectsACorruptTileCountOrSize() throws IOException {
+        assertRejected(header(0.1, OccupancyGrid.TILE_SIZE, -1));
+        assertRejected(header(0.1, OccupancyGrid.TILE_SIZE, 1)); // the tile is missing
+        assertRejected(header(0.1, 32, 0));
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        assertRejected("GROCC000".getBytes(StandardCharsets.US_ASCII));
+        assertRejected(new byte[0]);
+    }
+}
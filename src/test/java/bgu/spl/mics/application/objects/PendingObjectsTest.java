@@ -0,0 +1,63 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingObjectsTest {
+
+    private static TrackedObject object(String id, int time) {
+        return new TrackedObject(id, time, id, Collections.<CloudPoint>emptyList());
+    }
+
+    @Test
+    void handsOverAPosesObjectsInArrivalOrder() {
+        PendingObjects pending = new PendingObjects(10);
+        pending.add(object("a", 3));
+        pending.add(object("b", 4));
+        pending.add(object("c", 3));
+        assertTrue(pending.take(5).isEmpty());
+        List<TrackedObject> taken = pending.take(3);
+        assertEquals(2, taken.size());
+        assertEquals("a", taken.get(0).getId());
+        assertEquals("c", taken.get(1).getId());
+        assertEquals(1, pending.getHeld());
+        assertEquals(3, pending.getMaxHeld());
+        assertEquals(2, pending.getDrained());
+        assertTrue(pending.take(3).isEmpty());
+    }
+
+    @Test
+    void dropsTheOldestTimeWhenFull() {
+        PendingObjects pending = new PendingObjects(3);
+        pending.add(object("a", 5));
+        pending.add(object("b", 2));
+        pending.add(object("c", 2));
+        pending.add(object("d", 7)); // overflows: time 2 is the oldest
+        assertEquals(2, pending.getDropped());
+        assertEquals(2, pending.getHeld());
+        assertTrue(pending.take(2).isEmpty());
+        assertEquals(1, pending.take(5).size());
+        assertEquals(3, pending.getMaxHeld());
+    }
+
+    @Test
+    void loweringTheLimitDropsAtOnce() {
+        PendingObjects pending = new PendingObjects(PendingObjects.DEFAULT_LIMIT);
+        for (int time = 0; time < 10; time++) {
+            pending.add(object("o" + time, time));
+        }
+        pending.setLimit(4);
+        assertEquals(4, pending.getHeld());
+        assertEquals(6, pending.getDropped());
+        assertEquals(1, pending.take(9).size());
+        pending.setLimit(0);
+        assertTrue(pending.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> pending.setLimit(-1));
+    }
+}
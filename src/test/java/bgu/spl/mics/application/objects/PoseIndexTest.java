@@ -0,0 +1,64 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PoseIndexTest {
+
+    private static Pose pose(int time) {
+        return new Pose(time, -time, 0, time);
+    }
+
+    @Test
+    void staysDenseForConsecutiveTicks() {
+        PoseIndex poses = new PoseIndex();
+        for (int tick = 1; tick <= 1000; tick++) {
+            poses.add(pose(tick));
+        }
+        assertTrue(poses.isDense());
+        assertEquals(1000, poses.size());
+        assertEquals(500, poses.get(500).getTime());
+        assertNull(poses.get(0));
+        assertNull(poses.get(1001));
+        assertNull(poses.get(-1));
+    }
+
+    @Test
+    void aFarTickMovesThePosesToAMap() {
+        PoseIndex poses = new PoseIndex();
+        poses.add(pose(1));
+        poses.add(pose(2));
+        int epochMillis = 1_700_000_000;
+        poses.add(pose(epochMillis)); // would be gigabytes as an array
+        assertFalse(poses.isDense());
+        assertEquals(3, poses.size());
+        assertEquals(1, poses.get(1).getTime());
+        assertEquals(epochMillis, poses.get(epochMillis).getTime());
+        assertNull(poses.get(3));
+        List<Pose> ordered = poses.toList();
+        assertEquals(3, ordered.size());
+        assertEquals(epochMillis, ordered.get(2).getTime());
+    }
+
+    @Test
+    void theLastPoseOfATickCounts() {
+        PoseIndex dense = new PoseIndex();
+        PoseIndex sparse = new PoseIndex();
+        sparse.add(pose(-5));
+        for (PoseIndex poses : new PoseIndex[]{dense, sparse}) {
+            poses.add(pose(3));
+            Pose later = new Pose(9, 9, 9, 3);
+            poses.add(later);
+            assertSame(later, poses.get(3));
+        }
+        assertEquals(1, dense.size());
+        assertEquals(2, sparse.size());
+    }
+}
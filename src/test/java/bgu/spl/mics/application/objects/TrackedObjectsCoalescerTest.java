@@ -0,0 +1,94 @@
+package bgu.spl.mics.application.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackedObjectsCoalescerTest {
+
+    private static List<TrackedObject> objects(int tick, String... ids) {
+        List<TrackedObject> objects = new ArrayList<>();
+        for (String id : ids) {
+            objects.add(new TrackedObject(id, tick, id, Collections.<CloudPoint>emptyList()));
+        }
+        return objects;
+    }
+
+    private static List<String> ids(List<TrackedObject> objects) {
+        List<String> ids = new ArrayList<>();
+        for (TrackedObject object : objects) {
+            ids.add(object.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void holdsATickUntilALaterOne() {
+        TrackedObjectsCoalescer coalescer = new TrackedObjectsCoalescer(0);
+        assertTrue(coalescer.add(objects(1, "a"), 1).isEmpty());
+        assertTrue(coalescer.add(objects(1, "b"), 1).isEmpty());
+        assertTrue(coalescer.flushBefore(1).isEmpty());
+        assertEquals(Arrays.asList("a", "b"), ids(coalescer.add(objects(2, "c"), 2)));
+        assertEquals(Collections.singletonList("c"), ids(coalescer.flush()));
+        assertTrue(coalescer.flush().isEmpty());
+    }
+
+    @Test
+    void flushesAFullBatchEarly() {
+        TrackedObjectsCoalescer coalescer = new TrackedObjectsCoalescer(3);
+        assertTrue(coalescer.add(objects(1, "a", "b"), 1).isEmpty());
+        assertEquals(Arrays.asList("a", "b", "c"), ids(coalescer.add(objects(1, "c"), 1)));
+        assertTrue(coalescer.flush().isEmpty());
+    }
+
+    @Test
+    void aLateWorkerJoinsTheOpenBatch() {
+        TrackedObjectsCoalescer coalescer = new TrackedObjectsCoalescer(0);
+        coalescer.add(objects(1, "a"), 1);
+        assertEquals(Collections.singletonList("a"), ids(coalescer.add(objects(2, "b"), 2)));
+        assertTrue(coalescer.add(objects(1, "late"), 1).isEmpty());
+        // the late objects didn't reopen tick 1, so tick 2 is still open
+        assertTrue(coalescer.flushBefore(2).isEmpty());
+        assertEquals(Arrays.asList("b", "late"), ids(coalescer.flushBefore(3)));
+    }
+
+    @Test
+    void concurrentWorkersLoseNothing() throws InterruptedException {
+        TrackedObjectsCoalescer coalescer = new TrackedObjectsCoalescer(7);
+        int workers = 4;
+        int ticks = 2000;
+        AtomicInteger sent = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            String name = "w" + w;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int tick = 1; tick <= ticks; tick++) {
+                    sent.addAndGet(coalescer.flushBefore(tick).size());
+                    sent.addAndGet(coalescer.add(objects(tick, name), tick).size());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        sent.addAndGet(coalescer.flush().size());
+        assertEquals(workers * ticks, sent.get());
+    }
+}